@@ -0,0 +1,54 @@
+package pl.aeh.currencyexchange;
+
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared benchmark data shaped like an NBP table C
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[][] TABLE_C = {
+            {"USD", "dolar amerykański", "3.9512", "4.0310"},
+            {"AUD", "dolar australijski", "2.5934", "2.6458"},
+            {"CAD", "dolar kanadyjski", "2.8851", "2.9433"},
+            {"EUR", "euro", "4.2718", "4.3582"},
+            {"HUF", "forint (Węgry)", "0.011013", "0.011235"},
+            {"CHF", "frank szwajcarski", "4.4905", "4.5813"},
+            {"GBP", "funt szterling", "4.9902", "5.0910"},
+            {"JPY", "jen (Japonia)", "0.026458", "0.026992"},
+            {"CZK", "korona czeska", "0.1701", "0.1735"},
+            {"DKK", "korona duńska", "0.5729", "0.5845"},
+            {"NOK", "korona norweska", "0.3646", "0.3720"},
+            {"SEK", "korona szwedzka", "0.3710", "0.3784"},
+            {"XDR", "SDR (MFW)", "5.2408", "5.3466"},
+    };
+
+    private BenchmarkFixtures() {
+    }
+
+    public static List<ExchangeRateDto> currentRates() {
+        LocalDate rateDate = LocalDate.of(2024, 1, 3);
+        List<ExchangeRateDto> rates = new ArrayList<>();
+        for (int i = 0; i < TABLE_C.length; i++) {
+            BigDecimal bid = new BigDecimal(TABLE_C[i][2]);
+            BigDecimal ask = new BigDecimal(TABLE_C[i][3]);
+            rates.add(ExchangeRateDto.builder()
+                    .id((long) i + 1)
+                    .code(TABLE_C[i][0])
+                    .currency(TABLE_C[i][1])
+                    .bid(bid)
+                    .ask(ask)
+                    .midRate(bid.add(ask).divide(BigDecimal.valueOf(2), 6, RoundingMode.HALF_UP))
+                    .rateDate(rateDate)
+                    .createdAt(rateDate.atTime(8, 15))
+                    .build());
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,74 @@
+package pl.aeh.currencyexchange.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and parsing; parsing is measured with the verified-claims cache
+ * (repeat requests with the same token) and without it (signature check every time)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private JwtUtil cachingJwtUtil;
+    private JwtUtil verifyingJwtUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingJwtUtil = jwtUtil(10_000);
+        verifyingJwtUtil = jwtUtil(0);
+        userDetails = User.withUsername("jan.kowalski@example.com")
+                .password("secret")
+                .authorities("ROLE_USER")
+                .build();
+        token = cachingJwtUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public String generate() {
+        return cachingJwtUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public Claims parseVerified() {
+        return verifyingJwtUtil.parseClaims(token);
+    }
+
+    @Benchmark
+    public Claims parseCached() {
+        return cachingJwtUtil.parseClaims(token);
+    }
+
+    private static JwtUtil jwtUtil(long claimsCacheSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        setField(jwtUtil, "secretKey", SECRET);
+        setField(jwtUtil, "jwtExpiration", 86_400_000L);
+        setField(jwtUtil, "claimsCacheSize", claimsCacheSize);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
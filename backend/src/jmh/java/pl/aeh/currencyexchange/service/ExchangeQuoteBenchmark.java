@@ -0,0 +1,70 @@
+package pl.aeh.currencyexchange.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pl.aeh.currencyexchange.BenchmarkFixtures;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate math behind {@link WalletService#exchangeCurrency}: PLN to foreign, foreign to PLN and cross rates,
+ * priced from the in-memory rate snapshot (no DB or NBP involved).
+ * The {@code *Exact} variants run the BigDecimal pricing the fixed-point one replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExchangeQuoteBenchmark {
+
+    private final BigDecimal amount = new BigDecimal("1234.56");
+
+    private WalletService walletService;
+
+    @Setup
+    public void setUp() {
+        RateSnapshotStore rateSnapshotStore = new RateSnapshotStore();
+        rateSnapshotStore.publish(BenchmarkFixtures.currentRates());
+
+        // Only the rate snapshot is needed to price an exchange
+        ExchangeRateService exchangeRateService =
+                new ExchangeRateService(null, null, rateSnapshotStore, new RateHistoryStore(), null, new SimpleMeterRegistry());
+        walletService = new WalletService(null, null, null, exchangeRateService, null, null);
+    }
+
+    @Benchmark
+    public WalletService.Quote plnToForeign() {
+        return walletService.quote("PLN", "USD", amount);
+    }
+
+    @Benchmark
+    public WalletService.Quote foreignToPln() {
+        return walletService.quote("EUR", "PLN", amount);
+    }
+
+    @Benchmark
+    public WalletService.Quote cross() {
+        return walletService.quote("EUR", "GBP", amount);
+    }
+
+    @Benchmark
+    public WalletService.Quote plnToForeignExact() {
+        return walletService.quoteExact("PLN", "USD", amount);
+    }
+
+    @Benchmark
+    public WalletService.Quote foreignToPlnExact() {
+        return walletService.quoteExact("EUR", "PLN", amount);
+    }
+
+    @Benchmark
+    public WalletService.Quote crossExact() {
+        return walletService.quoteExact("EUR", "GBP", amount);
+    }
+}
@@ -0,0 +1,59 @@
+package pl.aeh.currencyexchange.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+import pl.aeh.currencyexchange.dto.WalletDto;
+import pl.aeh.currencyexchange.model.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping on the read paths: mid-rate calculation, {@link ExchangeRateService#mapToDto}
+ * and the wallet projection constructor used by {@code WalletRepository.findDtosByUserEmail}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateMappingBenchmark {
+
+    private final BigDecimal balance = new BigDecimal("1234.5600");
+
+    private ExchangeRate exchangeRate;
+
+    @Setup
+    public void setUp() {
+        exchangeRate = ExchangeRate.builder()
+                .id(1L)
+                .currency("USD")
+                .currencyName("dolar amerykański")
+                .rateDate(LocalDate.of(2024, 1, 3))
+                .bid(new BigDecimal("3.9512"))
+                .ask(new BigDecimal("4.0310"))
+                .createdAt(LocalDateTime.of(2024, 1, 3, 8, 15))
+                .build();
+    }
+
+    @Benchmark
+    public BigDecimal midRate() {
+        return exchangeRate.getMidRate();
+    }
+
+    @Benchmark
+    public ExchangeRateDto mapToDto() {
+        return ExchangeRateService.mapToDto(exchangeRate);
+    }
+
+    @Benchmark
+    public WalletDto walletDtoProjection() {
+        return new WalletDto(1L, "USD", balance);
+    }
+}
@@ -0,0 +1,42 @@
+package pl.aeh.currencyexchange.loadtest;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Steps of the load-test scenario, in the order a virtual user runs them
+ */
+enum Endpoint {
+
+    REGISTER("POST", "/api/users/register"),
+    LOGIN("POST", "/api/users/login"),
+    TOP_UP("POST", "/api/wallets/topup"),
+    EXCHANGE("POST", "/api/exchange"),
+    HISTORY("GET", "/api/transactions");
+
+    private final String method;
+    private final String path;
+
+    Endpoint(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    String method() {
+        return method;
+    }
+
+    String path() {
+        return path;
+    }
+
+    String label() {
+        return method + " " + path;
+    }
+
+    static Optional<Endpoint> match(String method, String path) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.method.equals(method) && endpoint.path.equals(path))
+                .findFirst();
+    }
+}
@@ -0,0 +1,187 @@
+package pl.aeh.currencyexchange.loadtest;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.aeh.currencyexchange.CurrencyExchangeApplication;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: starts the application against embedded (or external) Postgres and a stub
+ * NBP server, then starts new virtual users at a fixed arrival rate (open model) regardless of how
+ * fast earlier users finish, and reports throughput, latency percentiles and DB statements per endpoint.
+ * Statements are read from the application's own {@code sql.statements.per.request} summary, so they
+ * include the writes done for a request on single-writer lanes or in a group commit.
+ *
+ * <pre>
+ * ./gradlew loadTest -Dloadtest.rate=100 -Dloadtest.duration=60
+ * </pre>
+ *
+ * Options (system properties):
+ * <ul>
+ *     <li>{@code loadtest.rate} - new virtual users per second (default 50)</li>
+ *     <li>{@code loadtest.duration} - arrival phase in seconds (default 60)</li>
+ *     <li>{@code loadtest.profiles} - extra Spring profiles, e.g. {@code virtual}</li>
+ *     <li>{@code loadtest.db.url}, {@code loadtest.db.username}, {@code loadtest.db.password} - use an existing
+ *     Postgres instead of the embedded one</li>
+ *     <li>{@code loadtest.report} - report file (default build/reports/loadtest/report.txt)</li>
+ * </ul>
+ */
+public final class LoadTestRunner {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "50"));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 60));
+        String profiles = System.getProperty("loadtest.profiles", "");
+        Path reportFile = Path.of(System.getProperty("loadtest.report", "build/reports/loadtest/report.txt"));
+
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        EndpointStats sessionStats = new EndpointStats();
+
+        try (StubNbpServer nbp = StubNbpServer.start();
+             Database database = Database.start()) {
+            SpringApplication application = new SpringApplication(CurrencyExchangeApplication.class);
+
+            try (ConfigurableApplicationContext context = application.run(
+                    "--server.port=0",
+                    "--spring.profiles.active=" + (profiles.isBlank() ? "loadtest" : "loadtest," + profiles),
+                    "--spring.datasource.url=" + database.url(),
+                    "--spring.datasource.username=" + database.username(),
+                    "--spring.datasource.password=" + database.password(),
+                    "--spring.jpa.hibernate.ddl-auto=validate",
+                    "--spring.jpa.show-sql=false",
+                    "--nbp.api.url=" + nbp.baseUrl(),
+                    "--sql.statement-counting.enabled=true",
+                    // Keep the max of the whole run rather than of the last few minutes
+                    "--management.metrics.distribution.expiry[sql.statements.per.request]=PT24H",
+                    "--logging.level.root=WARN",
+                    "--logging.level.pl.aeh.currencyexchange=WARN")) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                Scenario scenario = new Scenario(HttpClient.newHttpClient(), "http://localhost:" + port,
+                        Long.toString(System.currentTimeMillis(), 36), stats, sessionStats);
+
+                long started = System.nanoTime();
+                long users = runArrivals(scenario, rate, duration);
+                double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+                String report = report(rate, duration, users, profiles, elapsedSeconds, stats, sessionStats,
+                        context.getBean(MeterRegistry.class));
+                System.out.println(report);
+                Files.createDirectories(reportFile.toAbsolutePath().getParent());
+                Files.writeString(reportFile, report);
+            }
+        }
+    }
+
+    /**
+     * Start a new user every 1/rate seconds on schedule; an arrival that is late is started immediately
+     * and keeps its intended start time, so generator lag shows up in the session latency
+     */
+    private static long runArrivals(Scenario scenario, double rate, Duration duration) throws Exception {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long users = (long) (rate * duration.toSeconds());
+        List<CompletableFuture<Void>> sessions = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (long user = 0; user < users; user++) {
+            long intendedStart = start + user * intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            sessions.add(scenario.run(user, intendedStart));
+        }
+
+        CompletableFuture.allOf(sessions.toArray(CompletableFuture[]::new)).get(5, TimeUnit.MINUTES);
+        return users;
+    }
+
+    private static String report(double rate, Duration duration, long users, String profiles, double elapsedSeconds,
+                                 Map<Endpoint, EndpointStats> stats, EndpointStats sessionStats,
+                                 MeterRegistry meterRegistry) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Load test: %.1f users/s for %s (%d users, profiles: %s), completed in %.1f s%n",
+                rate, duration, users, profiles.isBlank() ? "default" : profiles, elapsedSeconds));
+        report.append(String.format("%-26s %8s %7s %8s %9s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms",
+                "stmt avg", "stmt max"));
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            report.append(row(entry.getKey().label(), entry.getValue(), elapsedSeconds))
+                    .append(statements(meterRegistry, entry.getKey()))
+                    .append(String.format("%n"));
+        }
+        report.append(row("session (from arrival)", sessionStats, elapsedSeconds)).append(String.format("%n"));
+        return report.toString();
+    }
+
+    /**
+     * Mean and max statements per request of the endpoint, as counted by the application
+     */
+    private static String statements(MeterRegistry meterRegistry, Endpoint endpoint) {
+        DistributionSummary summary = meterRegistry.find("sql.statements.per.request")
+                .tags("method", endpoint.method(), "uri", endpoint.path())
+                .summary();
+        if (summary == null || summary.count() == 0) {
+            return String.format(" %9s %9s", "-", "-");
+        }
+        return String.format(" %9.1f %9.0f", summary.mean(), summary.max());
+    }
+
+    private static String row(String label, EndpointStats stats, double elapsedSeconds) {
+        StringBuilder row = new StringBuilder(String.format("%-26s %8d %7d %8.1f",
+                label, stats.count(), stats.errors(), stats.count() / elapsedSeconds));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %9.1f", stats.latencyMillis(percentile)));
+        }
+        return row.append(String.format(" %9.1f", stats.maxLatencyMillis())).toString();
+    }
+
+    /**
+     * Embedded Postgres unless loadtest.db.url points at an existing database
+     */
+    private record Database(EmbeddedPostgres embedded, String url, String username, String password)
+            implements AutoCloseable {
+
+        static Database start() throws IOException {
+            String url = System.getProperty("loadtest.db.url");
+            if (url != null && !url.isBlank()) {
+                return new Database(null, url,
+                        System.getProperty("loadtest.db.username", "postgres"),
+                        System.getProperty("loadtest.db.password", "postgres"));
+            }
+            EmbeddedPostgres embedded = EmbeddedPostgres.builder().start();
+            return new Database(embedded, embedded.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                    "postgres", "postgres");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package pl.aeh.currencyexchange.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One virtual user: register, log in, top up PLN, buy USD and read the transaction history.
+ * Requests are chained asynchronously so a user in flight does not hold a thread.
+ */
+class Scenario {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final String runId;
+    private final Map<Endpoint, EndpointStats> stats;
+    private final EndpointStats sessionStats;
+
+    Scenario(HttpClient httpClient, String baseUrl, String runId,
+             Map<Endpoint, EndpointStats> stats, EndpointStats sessionStats) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.runId = runId;
+        this.stats = stats;
+        this.sessionStats = sessionStats;
+    }
+
+    /**
+     * Run the scenario for virtual user {@code user}; the session latency is measured from
+     * {@code intendedStartNanos} so a late start caused by an overloaded generator is not hidden
+     */
+    CompletableFuture<Void> run(long user, long intendedStartNanos) {
+        String email = "lt-" + runId + "-" + user + "@loadtest.local";
+
+        return send(Endpoint.REGISTER, null, Map.of(
+                        "email", email, "password", PASSWORD, "firstName", "Load", "lastName", "Test " + user))
+                .thenCompose(ignored -> send(Endpoint.LOGIN, null, Map.of("email", email, "password", PASSWORD)))
+                .thenApply(response -> json(response).get("token").asText())
+                .thenCompose(token -> send(Endpoint.TOP_UP, token, Map.of("amount", 1000))
+                        .thenCompose(ignored -> send(Endpoint.EXCHANGE, token,
+                                Map.of("fromCurrency", "PLN", "toCurrency", "USD", "amount", 100)))
+                        .thenCompose(ignored -> send(Endpoint.HISTORY, token, null)))
+                .handle((response, error) -> {
+                    sessionStats.recordLatency(System.nanoTime() - intendedStartNanos, error == null);
+                    return null;
+                });
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(Endpoint endpoint, String token, Object body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path()))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .method(endpoint.method(), body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(write(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+
+        EndpointStats endpointStats = stats.get(endpoint);
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> endpointStats.recordLatency(System.nanoTime() - start,
+                        error == null && response.statusCode() / 100 == 2))
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException(endpoint.label() + " returned " + response.statusCode());
+                    }
+                    return response;
+                });
+    }
+
+    private String write(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonNode json(HttpResponse<String> response) {
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
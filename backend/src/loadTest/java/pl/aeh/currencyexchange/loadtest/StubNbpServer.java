@@ -0,0 +1,63 @@
+package pl.aeh.currencyexchange.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the NBP API: every table request gets today's table C
+ */
+class StubNbpServer implements AutoCloseable {
+
+    private static final String TABLES_PATH = "/api/exchangerates/tables/C";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private StubNbpServer(HttpServer server) {
+        this.server = server;
+    }
+
+    static StubNbpServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        StubNbpServer stub = new StubNbpServer(server);
+        server.setExecutor(stub.executor);
+        server.createContext(TABLES_PATH, StubNbpServer::handle);
+        server.start();
+        return stub;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + TABLES_PATH;
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        LocalDate today = LocalDate.now();
+        String body = """
+                [{"table":"C","no":"001/C/NBP/%1$tY","tradingDate":"%2$s","effectiveDate":"%1$s","rates":[
+                {"currency":"dolar amerykański","code":"USD","bid":3.9512,"ask":4.0310},
+                {"currency":"euro","code":"EUR","bid":4.2718,"ask":4.3582},
+                {"currency":"funt szterling","code":"GBP","bid":4.9902,"ask":5.0910},
+                {"currency":"frank szwajcarski","code":"CHF","bid":4.4905,"ask":4.5813}]}]"""
+                .formatted(today, today.minusDays(1));
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -1,53 +1,309 @@
 package pl.aeh.currencyexchange.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
 import pl.aeh.currencyexchange.dto.nbp.NbpTableDto;
 import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
 
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+/**
+ * Non-blocking NBP API client on the JDK HttpClient.
+ * Every request goes through a circuit breaker, is retried with exponential backoff on
+ * network errors and 5xx responses, and is hedged with a second request when the first
+ * one is slower than the hedge delay. The blocking methods are thin wrappers over the
+ * async ones for callers that need a plain result.
+ * Metrics: {@code nbp.fetch} (whole call incl. retries, by outcome), {@code nbp.request}
+ * (single HTTP attempt, by outcome), {@code nbp.retries}, {@code nbp.hedges} and
+ * {@code nbp.circuit.rejected}.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class NbpClient {
 
-    private final RestTemplate restTemplate;
-    private static final String NBP_API_BASE_URL = "http://api.nbp.pl/api/exchangerates/tables/C";
+    /**
+     * NBP does not serve date ranges longer than this many days in one request
+     */
+    public static final int MAX_RANGE_DAYS = 93;
+
+    private final HttpClient nbpHttpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${nbp.api.url:http://api.nbp.pl/api/exchangerates/tables/C}")
+    private String nbpApiBaseUrl;
+
+    @Value("${nbp.client.request-timeout:PT5S}")
+    private Duration requestTimeout = Duration.ofSeconds(5);
+
+    @Value("${nbp.client.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${nbp.client.initial-backoff:PT0.2S}")
+    private Duration initialBackoff = Duration.ofMillis(200);
+
+    /**
+     * Send a second request if the first has not answered within this delay, zero disables hedging
+     */
+    @Value("${nbp.client.hedge-delay:PT1S}")
+    private Duration hedgeDelay = Duration.ofSeconds(1);
+
+    @Value("${nbp.client.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold = 5;
+
+    @Value("${nbp.client.circuit-breaker.open-duration:PT30S}")
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    private NbpCircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    void init() {
+        circuitBreaker = new NbpCircuitBreaker(failureThreshold, openDuration, Clock.systemUTC());
+    }
 
     public NbpTableDto fetchCurrentRates() {
-        String url = NBP_API_BASE_URL + "?format=json";
-        return fetchRates(url);
+        return await(fetchCurrentRatesAsync());
     }
 
     public NbpTableDto fetchRatesByDate(LocalDate date) {
-        String url = String.format("%s/%s?format=json", NBP_API_BASE_URL, date);
-        return fetchRates(url);
+        return await(fetchRatesByDateAsync(date));
     }
 
-    private NbpTableDto fetchRates(String url) {
-        try {
-            log.debug("Fetching rates from NBP: {}", url);
-            NbpTableDto[] response = restTemplate.getForObject(url, NbpTableDto[].class);
-            
-            if (response != null && response.length > 0) {
-                return response[0];
-            } else {
-                throw new ResourceNotFoundException("No rates data received from NBP");
+    /**
+     * Fetch all tables published between two dates (inclusive)
+     *
+     * @param startDate first date of the range
+     * @param endDate   last date of the range, at most {@link #MAX_RANGE_DAYS} days after startDate
+     * @return tables ordered by effective date
+     */
+    public List<NbpTableDto> fetchRatesBetween(LocalDate startDate, LocalDate endDate) {
+        return await(fetchRatesBetweenAsync(startDate, endDate));
+    }
+
+    public CompletableFuture<NbpTableDto> fetchCurrentRatesAsync() {
+        String url = nbpApiBaseUrl + "?format=json";
+        return fetchTables(url).thenApply(tables -> tables.get(0));
+    }
+
+    public CompletableFuture<NbpTableDto> fetchRatesByDateAsync(LocalDate date) {
+        String url = String.format("%s/%s?format=json", nbpApiBaseUrl, date);
+        return fetchTables(url).thenApply(tables -> tables.get(0));
+    }
+
+    public CompletableFuture<List<NbpTableDto>> fetchRatesBetweenAsync(LocalDate startDate, LocalDate endDate) {
+        String url = String.format("%s/%s/%s?format=json", nbpApiBaseUrl, startDate, endDate);
+        return fetchTables(url);
+    }
+
+    private CompletableFuture<List<NbpTableDto>> fetchTables(String url) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return fetchWithRetry(url, 1).whenComplete((tables, error) -> sample.stop(meterRegistry.timer("nbp.fetch",
+                "outcome", error == null ? "success" : unwrap(error).getClass().getSimpleName())));
+    }
+
+    private CompletableFuture<List<NbpTableDto>> fetchWithRetry(String url, int attempt) {
+        return hedged(url).handle((tables, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(tables);
+            }
+            Throwable cause = unwrap(error);
+            if (!isRetryable(cause) || attempt >= maxAttempts) {
+                return CompletableFuture.<List<NbpTableDto>>failedFuture(cause);
+            }
+            long delay = backoffMillis(attempt);
+            meterRegistry.counter("nbp.retries").increment();
+            log.warn("NBP request failed (attempt {}/{}), retrying in {} ms: {}",
+                    attempt, maxAttempts, delay, cause.getMessage());
+            return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> fetchWithRetry(url, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Send the request and, if it is still running after the hedge delay, a second one.
+     * The first successful response wins; the call fails only when every sent request failed.
+     */
+    private CompletableFuture<List<NbpTableDto>> hedged(String url) {
+        if (hedgeDelay.isZero() || hedgeDelay.isNegative()) {
+            return send(url);
+        }
+
+        CompletableFuture<List<NbpTableDto>> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        Runnable sendOne = () -> send(url).whenComplete((tables, error) -> {
+            if (error == null) {
+                result.complete(tables);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
             }
-        } catch (HttpClientErrorException.NotFound e) {
+        });
+
+        sendOne.run();
+        CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            if (!result.isDone()) {
+                log.debug("NBP did not answer within {}, sending hedged request", hedgeDelay);
+                meterRegistry.counter("nbp.hedges").increment();
+                outstanding.incrementAndGet();
+                sendOne.run();
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<List<NbpTableDto>> send(String url) {
+        if (!circuitBreaker.tryAcquire()) {
+            meterRegistry.counter("nbp.circuit.rejected").increment();
+            return CompletableFuture.failedFuture(new CircuitOpenException());
+        }
+
+        log.debug("Fetching rates from NBP: {}", url);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return nbpHttpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    sample.stop(meterRegistry.timer("nbp.request", "outcome", outcome(response, error)));
+                    if (error != null || response.statusCode() >= 500) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                    }
+                })
+                .thenApply(response -> readTables(url, response));
+    }
+
+    private List<NbpTableDto> readTables(String url, HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status == 404) {
             log.warn("Rates not found for URL: {}", url);
             throw new ResourceNotFoundException("Rates not found for the specified criteria");
-        } catch (ResourceAccessException e) {
-            log.error("Network error while connecting to NBP API: {}", e.getMessage());
-            throw new RuntimeException("Could not connect to NBP API", e);
-        } catch (Exception e) {
-            log.error("Error fetching rates from NBP: {}", e.getMessage());
-            throw new RuntimeException("Failed to fetch rates from NBP", e);
+        }
+        if (status >= 500 || status == 429) {
+            throw new RetryableResponseException(status);
+        }
+        if (status >= 300) {
+            throw new IllegalStateException("Unexpected NBP response status " + status);
+        }
+
+        try {
+            NbpTableDto[] tables = objectMapper.readValue(response.body(), NbpTableDto[].class);
+            if (tables == null || tables.length == 0) {
+                throw new ResourceNotFoundException("No rates data received from NBP");
+            }
+            return Arrays.asList(tables);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid NBP response", e);
+        }
+    }
+
+    /**
+     * Wait for an async result and translate failures to the exceptions callers expect
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching rates from NBP", e);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof ResourceNotFoundException notFound) {
+                throw notFound;
+            }
+            if (cause instanceof CircuitOpenException circuitOpen) {
+                throw circuitOpen;
+            }
+            if (cause instanceof IOException) {
+                log.error("Network error while connecting to NBP API: {}", cause.getMessage());
+                throw new RuntimeException("Could not connect to NBP API", cause);
+            }
+            log.error("Error fetching rates from NBP: {}", cause.getMessage());
+            throw new RuntimeException("Failed to fetch rates from NBP", cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String outcome(HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = unwrap(error);
+            if (cause instanceof HttpTimeoutException) {
+                return "timeout";
+            }
+            if (cause instanceof ConnectException) {
+                return "connect_error";
+            }
+            return cause instanceof IOException ? "io_error" : "error";
+        }
+        int status = response.statusCode();
+        if (status == 404) {
+            return "not_found";
+        }
+        if (status >= 500 || status == 429) {
+            return "server_error";
+        }
+        return status >= 300 ? "client_error" : "success";
+    }
+
+    private static boolean isRetryable(Throwable cause) {
+        return cause instanceof IOException || cause instanceof RetryableResponseException;
+    }
+
+    /**
+     * Exponential backoff with jitter: between half and all of initial * 2^(attempt-1)
+     */
+    private long backoffMillis(int attempt) {
+        long base = initialBackoff.toMillis() << Math.min(attempt - 1, 16);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+    }
+
+    /**
+     * Thrown when the circuit breaker rejects a request without sending it
+     */
+    static class CircuitOpenException extends RuntimeException {
+        CircuitOpenException() {
+            super("NBP API is unavailable, circuit breaker is open");
+        }
+    }
+
+    private static class RetryableResponseException extends RuntimeException {
+        RetryableResponseException(int status) {
+            super("NBP API responded with status " + status);
         }
     }
 }
@@ -1,20 +1,28 @@
 package pl.aeh.currencyexchange.config;
 
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 
 @Configuration
 public class AppConfig {
 
+    /**
+     * HTTP client for the NBP API; runs its response handling on virtual threads
+     * when the virtual profile is active
+     */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder
-                .setConnectTimeout(Duration.ofSeconds(5))
-                .setReadTimeout(Duration.ofSeconds(5))
-                .build();
+    public HttpClient nbpHttpClient(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (virtualThreads) {
+            builder.executor(new VirtualThreadTaskExecutor("nbp-http-"));
+        }
+        return builder.build();
     }
 }
@@ -1,21 +1,52 @@
 package pl.aeh.currencyexchange.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import pl.aeh.currencyexchange.service.ExchangeRateService;
 
-import java.util.Arrays;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
 
+/**
+ * Cache Configuration
+ * Bounded Caffeine caches that expire at the next NBP publication and record statistics
+ * (exposed by Actuator as cache.gets / cache.puts / cache.evictions metrics)
+ */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    @Value("${cache.nbp-publication.time:08:15}")
+    private String nbpPublicationTime;
+
+    @Value("${cache.nbp-publication.zone:Europe/Warsaw}")
+    private ZoneId nbpPublicationZone;
+
+    @Value("${cache.current-rates.refresh-after:PT30M}")
+    private Duration currentRatesRefreshAfter;
+
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
-        cacheManager.setCacheNames(Arrays.asList("currentRates", "rateHistory"));
+    public CacheManager cacheManager(ObjectProvider<ExchangeRateService> exchangeRateService) {
+        NbpPublicationExpiry expiry = new NbpPublicationExpiry(
+                Clock.systemDefaultZone(), nbpPublicationZone, LocalTime.parse(nbpPublicationTime));
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+        // Single entry, reloaded in the background before it gets stale (refresh-ahead)
+        cacheManager.registerCustomCache("currentRates", Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfter(expiry)
+                .refreshAfterWrite(currentRatesRefreshAfter)
+                .recordStats()
+                .build(key -> exchangeRateService.getObject().loadCurrentRates()));
+
         return cacheManager;
     }
 }
@@ -0,0 +1,72 @@
+package pl.aeh.currencyexchange.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource wrapper reporting every statement execution to {@link SqlStatementCounter}.
+ * Statements created by its connections count once per {@code execute*} call, so a JDBC batch counts once.
+ */
+final class CountingDataSource extends DelegatingDataSource {
+
+    CountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    static Connection counting(Connection connection) {
+        return proxy(Connection.class, connection, (method, result) ->
+                result instanceof Statement statement && method.getReturnType().isInterface()
+                        ? proxy(method.getReturnType(), statement, null)
+                        : result);
+    }
+
+    /**
+     * Proxy {@code target} as {@code type}, passing results through {@code results} when given and counting
+     * executions otherwise. Equality is by identity, like the pooled connections it wraps.
+     */
+    private static <T> T proxy(Class<T> type, Object target, ResultMapper results) {
+        InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> {
+                if (results == null && method.getName().startsWith("execute")) {
+                    SqlStatementCounter.increment();
+                }
+                Object result = invoke(target, method, args);
+                yield results == null ? result : results.map(method, result);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object result);
+    }
+}
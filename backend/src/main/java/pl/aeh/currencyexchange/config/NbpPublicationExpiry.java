@@ -0,0 +1,60 @@
+package pl.aeh.currencyexchange.config;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Caffeine expiry policy that expires entries at the next NBP table publication.
+ * NBP publishes table C on working days in the morning (Warsaw time), so rates
+ * cached at any point stay valid until the next publication and no longer.
+ */
+public class NbpPublicationExpiry implements Expiry<Object, Object> {
+
+    private final Clock clock;
+    private final ZoneId zone;
+    private final LocalTime publicationTime;
+
+    public NbpPublicationExpiry(Clock clock, ZoneId zone, LocalTime publicationTime) {
+        this.clock = clock;
+        this.zone = zone;
+        this.publicationTime = publicationTime;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return nanosUntilNextPublication();
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return nanosUntilNextPublication();
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    /**
+     * Time left until the next publication on a working day
+     *
+     * @return nanoseconds until the next publication
+     */
+    long nanosUntilNextPublication() {
+        ZonedDateTime now = ZonedDateTime.now(clock).withZoneSameInstant(zone);
+        ZonedDateTime next = now.with(publicationTime);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        while (next.getDayOfWeek() == DayOfWeek.SATURDAY || next.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next).toNanos();
+    }
+}
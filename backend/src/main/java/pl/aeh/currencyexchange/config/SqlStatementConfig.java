@@ -0,0 +1,65 @@
+package pl.aeh.currencyexchange.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+/**
+ * Per-request SQL statement counting for N+1 detection, enabled with {@code sql.statement-counting.enabled}.
+ * <p>
+ * Counting wraps every JDBC connection and statement in a reflective proxy, so each JDBC call
+ * (the wallet write path included) pays a proxy dispatch and a thread-local lookup. It is off by default
+ * and meant for the profiles that check budgets or want the {@code sql.statements.per.request} metric.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sql.statement-counting.enabled", havingValue = "true")
+public class SqlStatementConfig {
+
+    @Value("${sql.statement-budget.fail-on-exceed:false}")
+    private boolean failOnExceed;
+
+    /**
+     * Outermost filter, so statements issued by the security filter chain are counted as well
+     */
+    @Bean
+    public FilterRegistrationBean<SqlStatementCountingFilter> sqlStatementCountingFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SqlStatementCountingFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatementCountingFilter(meterRegistry, failOnExceed));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Count statements at the DataSource, so JdbcTemplate statements are seen as well as Hibernate's
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)
+                        ? new CountingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public WebMvcConfigurer statementBudgetConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(SqlStatementCountingFilter.budgetInterceptor());
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package pl.aeh.currencyexchange.config;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Counts the SQL statements executed on behalf of the current thread between {@link #start()} and {@link #stop()}.
+ * <p>
+ * Executions are reported by {@link CountingDataSource}, so every statement is seen whichever API issued it
+ * (Hibernate, JdbcTemplate or a raw connection); a JDBC batch counts once. Work handed off to another thread,
+ * like group commit or the single-writer lanes, keeps counting against the waiting request through a
+ * {@link Handle} obtained with {@link #capture()}.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<AtomicInteger> COUNT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * Start counting on the current thread, discarding any previous count
+     */
+    public static void start() {
+        COUNT.set(new AtomicInteger());
+    }
+
+    /**
+     * @return statements counted since {@link #start()}, or 0 when counting was not started
+     */
+    public static int current() {
+        AtomicInteger count = COUNT.get();
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Stop counting on the current thread
+     *
+     * @return statements counted since {@link #start()}
+     */
+    public static int stop() {
+        int count = current();
+        COUNT.remove();
+        return count;
+    }
+
+    /**
+     * @return handle on the current thread's count, for work done on its behalf on another thread;
+     * a handle that counts nothing when counting was not started
+     */
+    public static Handle capture() {
+        return new Handle(COUNT.get());
+    }
+
+    /**
+     * Run work shared by several callers, such as the commit of a group, and count its statements for each of them
+     */
+    public static void shared(Collection<Handle> handles, Runnable work) {
+        AtomicInteger count = new AtomicInteger();
+        try {
+            new Handle(count).call(() -> {
+                work.run();
+                return null;
+            });
+        } finally {
+            handles.forEach(handle -> handle.add(count.get()));
+        }
+    }
+
+    static void increment() {
+        AtomicInteger count = COUNT.get();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * A count captured on one thread and continued on another
+     */
+    public static final class Handle {
+
+        private final AtomicInteger count;
+
+        private Handle(AtomicInteger count) {
+            this.count = count;
+        }
+
+        /**
+         * Run {@code work} on the current thread, counting its statements against this handle
+         */
+        public <T> T call(Supplier<T> work) {
+            AtomicInteger previous = COUNT.get();
+            bind(count);
+            try {
+                return work.get();
+            } finally {
+                bind(previous);
+            }
+        }
+
+        private void add(int statements) {
+            if (count != null) {
+                count.addAndGet(statements);
+            }
+        }
+
+        private static void bind(AtomicInteger count) {
+            if (count == null) {
+                COUNT.remove();
+            } else {
+                COUNT.set(count);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pl.aeh.currencyexchange.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements each request executes (authentication included) with {@link SqlStatementCounter},
+ * records them in the {@code sql.statements.per.request} summary by method and URI pattern and checks
+ * them against the endpoint's {@link StatementBudget}.
+ */
+@Slf4j
+public class SqlStatementCountingFilter extends OncePerRequestFilter {
+
+    private static final String BUDGET_ATTRIBUTE = SqlStatementCountingFilter.class.getName() + ".budget";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean failOnExceed;
+
+    public SqlStatementCountingFilter(MeterRegistry meterRegistry, boolean failOnExceed) {
+        this.meterRegistry = meterRegistry;
+        this.failOnExceed = failOnExceed;
+    }
+
+    /**
+     * Interceptor that publishes the handler's {@link StatementBudget} to this filter
+     */
+    public static HandlerInterceptor budgetInterceptor() {
+        return new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                     @NonNull Object handler) {
+                if (handler instanceof HandlerMethod handlerMethod) {
+                    StatementBudget budget = handlerMethod.getMethodAnnotation(StatementBudget.class);
+                    if (budget != null) {
+                        request.setAttribute(BUDGET_ATTRIBUTE, budget.value());
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        SqlStatementCounter.start();
+        int statements;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statements = SqlStatementCounter.stop();
+        }
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder("sql.statements.per.request")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(statements);
+        log.debug("{} {} executed {} SQL statements", request.getMethod(), uri, statements);
+
+        Object budget = request.getAttribute(BUDGET_ATTRIBUTE);
+        if (budget instanceof Integer max && statements > max) {
+            String message = String.format("%s %s executed %d SQL statements, budget is %d",
+                    request.getMethod(), uri, statements, max);
+            log.warn(message);
+            if (failOnExceed) {
+                throw new StatementBudgetExceededException(message);
+            }
+        }
+    }
+}
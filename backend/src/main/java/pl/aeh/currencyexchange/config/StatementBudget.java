@@ -0,0 +1,21 @@
+package pl.aeh.currencyexchange.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements a request to the annotated endpoint may execute,
+ * including the authentication lookup. Checked only with {@code sql.statement-counting.enabled=true};
+ * exceeding it is logged as a warning and, with {@code sql.statement-budget.fail-on-exceed=true}
+ * ({@code StatementBudgetIntegrationTest}), fails the request.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+
+    int value();
+}
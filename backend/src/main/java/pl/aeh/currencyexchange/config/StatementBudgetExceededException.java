@@ -0,0 +1,11 @@
+package pl.aeh.currencyexchange.config;
+
+/**
+ * Thrown in assertion mode when a request executed more SQL statements than its {@link StatementBudget}
+ */
+public class StatementBudgetExceededException extends IllegalStateException {
+
+    public StatementBudgetExceededException(String message) {
+        super(message);
+    }
+}
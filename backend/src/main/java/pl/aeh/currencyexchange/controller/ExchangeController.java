@@ -5,9 +5,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import pl.aeh.currencyexchange.config.StatementBudget;
 import pl.aeh.currencyexchange.dto.ExchangeRequestDto;
 import pl.aeh.currencyexchange.dto.TransactionDto; 
 import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.service.IdempotencyService;
 import pl.aeh.currencyexchange.service.WalletService;
 
 @RestController
@@ -16,15 +18,24 @@ import pl.aeh.currencyexchange.service.WalletService;
 public class ExchangeController {
 
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
+    @StatementBudget(10)
     public ResponseEntity<TransactionDto> exchangeCurrency(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody ExchangeRequestDto request
     ) {
-        Transaction transaction = walletService.exchangeCurrency(userDetails.getUsername(), request);
+        TransactionDto response = idempotencyService.execute(userDetails.getUsername(), idempotencyKey,
+                "exchange", request, TransactionDto.class, recordResponse -> walletService.exchangeCurrency(
+                        userDetails.getUsername(), request, transaction -> recordResponse.apply(toDto(transaction))));
 
-        TransactionDto response = TransactionDto.builder()
+        return ResponseEntity.ok(response);
+    }
+
+    private static TransactionDto toDto(Transaction transaction) {
+        return TransactionDto.builder()
                 .id(transaction.getId())
                 .fromCurrency(transaction.getFromCurrency())
                 .toCurrency(transaction.getToCurrency())
@@ -34,7 +45,5 @@ public class ExchangeController {
                 .status(transaction.getStatus().name())
                 .createdAt(transaction.getCreatedAt())
                 .build();
-
-        return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
@@ -14,10 +14,14 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import pl.aeh.currencyexchange.dto.BackfillResultDto;
+import pl.aeh.currencyexchange.dto.CrossRatesDto;
 import pl.aeh.currencyexchange.dto.ExchangeRateDto;
 import pl.aeh.currencyexchange.dto.ErrorResponseDto;
 import pl.aeh.currencyexchange.service.ExchangeRateService;
+import pl.aeh.currencyexchange.service.RateBackfillService;
 
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -29,6 +33,7 @@ import java.util.List;
 public class ExchangeRateController {
 
     private final ExchangeRateService exchangeRateService;
+    private final RateBackfillService rateBackfillService;
 
     @GetMapping("/current")
     @Operation(
@@ -88,6 +93,21 @@ public class ExchangeRateController {
         return ResponseEntity.ok(exchangeRateService.getRateHistory(code, from, to));
     }
 
+    @GetMapping("/cross")
+    @Operation(
+            summary = "Get cross-rate matrix",
+            description = "Returns cross rates (bid of source / ask of target) between every pair of currencies from NBP table C."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successful operation",
+                    content = @Content(schema = @Schema(implementation = CrossRatesDto.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public ResponseEntity<CrossRatesDto> getCrossRates() {
+        log.debug("GET /api/rates/cross");
+        return ResponseEntity.ok(exchangeRateService.getCrossRateMatrix());
+    }
+
     @PostMapping("/sync")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
@@ -105,4 +125,56 @@ public class ExchangeRateController {
         exchangeRateService.syncRatesFromNbp();
         return ResponseEntity.ok("Exchange rates synchronized successfully");
     }
+
+    @PostMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Backfill historical rates from NBP",
+            description = "Starts loading historical rates for a date range in chunks of at most 93 days " +
+                    "and returns immediately; poll GET /api/rates/backfill for progress. Chunks completed by " +
+                    "an earlier run are skipped. The end date is clamped to the last date NBP has published " +
+                    "rates for. Requires ADMIN role.",
+            security = @SecurityRequirement(name = "bearerAuth")
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Backfill started",
+                    content = @Content(schema = @Schema(implementation = BackfillResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid date range"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden (requires ADMIN)"),
+            @ApiResponse(responseCode = "409", description = "Backfill already running")
+    })
+    public ResponseEntity<BackfillResultDto> backfillRates(
+            @Parameter(description = "Start date (YYYY-MM-DD), defaults to 5 years before end date")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "End date (YYYY-MM-DD), defaults to today")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        if (to == null) to = LocalDate.now();
+        if (from == null) from = to.minusYears(5);
+
+        log.info("POST /api/rates/backfill?from={}&to={} - Backfill triggered", from, to);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/rates/backfill"))
+                .body(rateBackfillService.start(from, to));
+    }
+
+    @GetMapping("/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "Get historical backfill progress",
+            description = "Returns the progress of the running backfill or the result of the last one. Requires ADMIN role.",
+            security = @SecurityRequirement(name = "bearerAuth")
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Successful operation",
+                    content = @Content(schema = @Schema(implementation = BackfillResultDto.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden (requires ADMIN)"),
+            @ApiResponse(responseCode = "404", description = "No backfill has been started")
+    })
+    public ResponseEntity<BackfillResultDto> getBackfillProgress() {
+        log.debug("GET /api/rates/backfill");
+        return ResponseEntity.ok(rateBackfillService.progress());
+    }
 }
@@ -1,13 +1,19 @@
 package pl.aeh.currencyexchange.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.aeh.currencyexchange.config.StatementBudget;
 import pl.aeh.currencyexchange.dto.TransactionDto;
+import pl.aeh.currencyexchange.dto.TransactionPageDto;
+import pl.aeh.currencyexchange.service.TransactionHistoryService;
 import pl.aeh.currencyexchange.service.WalletService;
 
 import java.util.List;
@@ -17,10 +23,34 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final WalletService walletService;
+    private final TransactionHistoryService transactionHistoryService;
 
     @GetMapping
+    @StatementBudget(3)
     public ResponseEntity<List<TransactionDto>> getHistory(@AuthenticationPrincipal UserDetails userDetails) {
         return ResponseEntity.ok(walletService.getTransactionHistory(userDetails.getUsername()));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/page")
+    @StatementBudget(3)
+    public ResponseEntity<TransactionPageDto> getHistoryPage(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + TransactionHistoryService.DEFAULT_PAGE_SIZE) int limit
+    ) {
+        return ResponseEntity.ok(transactionHistoryService.getPage(userDetails.getUsername(), cursor, limit));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(@AuthenticationPrincipal UserDetails userDetails) {
+        String email = userDetails.getUsername();
+        StreamingResponseBody body = out -> transactionHistoryService.exportHistory(email, out);
+
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+}
@@ -12,10 +12,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import pl.aeh.currencyexchange.config.StatementBudget;
 import pl.aeh.currencyexchange.dto.ErrorResponseDto;
 import pl.aeh.currencyexchange.dto.TopUpDto;
 import pl.aeh.currencyexchange.dto.WalletDto;
 import pl.aeh.currencyexchange.model.Wallet;
+import pl.aeh.currencyexchange.service.IdempotencyService;
 import pl.aeh.currencyexchange.service.WalletService;
 
 import java.util.List;
@@ -28,8 +30,10 @@ import java.util.List;
 public class WalletController {
 
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping("/me")
+    @StatementBudget(3)
     @Operation(
             summary = "Get user wallets",
             description = "Returns a list of wallets belonging to the currently authenticated user"
@@ -53,6 +57,7 @@ public class WalletController {
     }
 
     @PostMapping("/topup")
+    @StatementBudget(8)
     @Operation(
             summary = "Top up wallet",
             description = "Adds funds to the user's PLN wallet (Simulation)"
@@ -71,19 +76,24 @@ public class WalletController {
     })
     public ResponseEntity<WalletDto> topUp(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody TopUpDto topUpDto
     ) {
         log.info("POST /api/wallets/topup - Top up request from user: {}, amount: {}", 
                 userDetails.getUsername(), topUpDto.getAmount());
 
-        Wallet updatedWallet = walletService.topUpWallet(userDetails.getUsername(), topUpDto.getAmount());
-
-        WalletDto response = WalletDto.builder()
-                .id(updatedWallet.getId())
-                .currency(updatedWallet.getCurrency())
-                .balance(updatedWallet.getBalance())
-                .build();
+        WalletDto response = idempotencyService.execute(userDetails.getUsername(), idempotencyKey,
+                "topup", topUpDto, WalletDto.class, recordResponse -> walletService.topUpWallet(
+                        userDetails.getUsername(), topUpDto.getAmount(), wallet -> recordResponse.apply(toDto(wallet))));
 
         return ResponseEntity.ok(response);
     }
+
+    private static WalletDto toDto(Wallet wallet) {
+        return WalletDto.builder()
+                .id(wallet.getId())
+                .currency(wallet.getCurrency())
+                .balance(wallet.getBalance())
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package pl.aeh.currencyexchange.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * DTO reporting the progress or result of a historical rate backfill
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillResultDto {
+    private Status status;
+    private LocalDate from;
+    private LocalDate to;
+    private Integer chunks;
+    private Integer skippedChunks;
+    private Integer completedChunks;
+    private Integer tables;
+    private Integer insertedRates;
+    private String error;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
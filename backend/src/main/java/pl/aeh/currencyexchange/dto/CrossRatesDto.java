@@ -0,0 +1,25 @@
+package pl.aeh.currencyexchange.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO for the cross-rate matrix.
+ * rates[i][j] is the amount of currencies[j] received for one unit of currencies[i].
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrossRatesDto {
+    private Long version;
+    private LocalDate rateDate;
+    private List<String> currencies;
+    private BigDecimal[][] rates;
+}
@@ -1,12 +1,19 @@
 package pl.aeh.currencyexchange.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+import pl.aeh.currencyexchange.model.TransactionStatus;
+import pl.aeh.currencyexchange.model.TransactionType;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class TransactionDto {
     private Long id;
     private String fromCurrency;
@@ -17,4 +24,15 @@ public class TransactionDto {
     private String status;
     private LocalDateTime createdAt;
     private String type; 
-}
\ No newline at end of file
+
+    /**
+     * Constructor for JPQL projections ({@code SELECT new ...TransactionDto(...)}),
+     * which select the enum-typed entity attributes
+     */
+    public TransactionDto(Long id, String fromCurrency, String toCurrency, BigDecimal fromAmount,
+                          BigDecimal toAmount, BigDecimal exchangeRate, TransactionStatus status,
+                          LocalDateTime createdAt, TransactionType type) {
+        this(id, fromCurrency, toCurrency, fromAmount, toAmount, exchangeRate,
+                status.name(), createdAt, type.name());
+    }
+}
@@ -0,0 +1,11 @@
+package pl.aeh.currencyexchange.exception;
+
+/**
+ * Exception thrown when a request conflicts with an operation already in progress
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,72 @@
+package pl.aeh.currencyexchange.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Completed chunk of a historical rate backfill.
+ * Chunks recorded here are skipped when an interrupted backfill is resumed.
+ */
+@Entity
+@Table(
+    name = "rate_backfill_checkpoints",
+    uniqueConstraints = @UniqueConstraint(name = "uk_backfill_chunk", columnNames = {"chunk_start", "chunk_end"})
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateBackfillCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "chunk_start", nullable = false)
+    private LocalDate chunkStart;
+
+    @NotNull
+    @Column(name = "chunk_end", nullable = false)
+    private LocalDate chunkEnd;
+
+    @Column(name = "tables_count", nullable = false)
+    private int tablesCount;
+
+    @Column(name = "rates_count", nullable = false)
+    private int ratesCount;
+
+    @CreationTimestamp
+    @Column(name = "completed_at", nullable = false, updatable = false)
+    private LocalDateTime completedAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RateBackfillCheckpoint)) return false;
+        RateBackfillCheckpoint that = (RateBackfillCheckpoint) o;
+        return id != null && id.equals(that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "RateBackfillCheckpoint{" +
+                "id=" + id +
+                ", chunkStart=" + chunkStart +
+                ", chunkEnd=" + chunkEnd +
+                ", tablesCount=" + tablesCount +
+                ", ratesCount=" + ratesCount +
+                '}';
+    }
+}
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
     name = "transactions",
     indexes = {
         @Index(name = "idx_transactions_user_id", columnList = "user_id"),
-        @Index(name = "idx_transactions_created_at", columnList = "created_at")
+        @Index(name = "idx_transactions_created_at", columnList = "created_at"),
+        @Index(name = "idx_transactions_user_created_id", columnList = "user_id, created_at DESC, id DESC")
     }
 )
 @Getter
@@ -25,8 +26,14 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
 
+    /**
+     * Pooled sequence so ledger rows can be inserted in JDBC batches
+     * (must match the INCREMENT BY of transactions_id_seq). The column has no default:
+     * rows inserted with plain SQL take their ID from this generator too.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_id_seq")
+    @SequenceGenerator(name = "transactions_id_seq", sequenceName = "transactions_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -11,7 +11,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long>, ExchangeRateRepositoryCustom {
 
     /**
      * Find exchange rate by currency code
@@ -67,6 +67,22 @@ public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long
      */
     List<ExchangeRate> findAllByCurrencyAndRateDateBetween(String currency, LocalDate fromDate, LocalDate toDate);
 
+    /**
+     * Find all exchange rates for a date range (all currencies)
+     *
+     * @param fromDate start date
+     * @param toDate   end date
+     * @return List of exchange rates
+     */
+    List<ExchangeRate> findAllByRateDateBetween(LocalDate fromDate, LocalDate toDate);
+
+    /**
+     * Find all exchange rates ordered by currency and date (full history load)
+     *
+     * @return List of exchange rates
+     */
+    List<ExchangeRate> findAllByOrderByCurrencyAscRateDateAsc();
+
     /**
      * Check if exchange rate exists for currency and date
      *
@@ -0,0 +1,20 @@
+package pl.aeh.currencyexchange.repository;
+
+import pl.aeh.currencyexchange.model.ExchangeRate;
+
+import java.util.List;
+
+/**
+ * Set-based write operations for exchange rates that bypass the persistence context
+ */
+public interface ExchangeRateRepositoryCustom {
+
+    /**
+     * Insert exchange rates in a single statement.
+     * Rows that already exist for the same currency and date (uk_currency_code_date) are skipped.
+     *
+     * @param rates rates to insert
+     * @return number of inserted rows (rows skipped as duplicates are not counted)
+     */
+    int upsertAll(List<ExchangeRate> rates);
+}
@@ -0,0 +1,60 @@
+package pl.aeh.currencyexchange.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pl.aeh.currencyexchange.model.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link ExchangeRateRepositoryCustom}
+ */
+@RequiredArgsConstructor
+public class ExchangeRateRepositoryImpl implements ExchangeRateRepositoryCustom {
+
+    // One statement over unnested arrays instead of a JDBC batch: with reWriteBatchedInserts
+    // the driver reports SUCCESS_NO_INFO for every batched row, while a single statement
+    // always returns the exact number of inserted rows
+    private static final String UPSERT_SQL =
+            "INSERT INTO exchange_rates (currency, rate_date, bid, ask, currency_name, created_at, updated_at) " +
+            "SELECT r.currency, r.rate_date, r.bid, r.ask, r.currency_name, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::varchar[], ?::date[], ?::numeric[], ?::numeric[], ?::varchar[]) " +
+            "AS r(currency, rate_date, bid, ask, currency_name) " +
+            "ON CONFLICT (currency, rate_date) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int upsertAll(List<ExchangeRate> rates) {
+        if (rates.isEmpty()) {
+            return 0;
+        }
+
+        String[] currencies = new String[rates.size()];
+        Date[] dates = new Date[rates.size()];
+        BigDecimal[] bids = new BigDecimal[rates.size()];
+        BigDecimal[] asks = new BigDecimal[rates.size()];
+        String[] names = new String[rates.size()];
+        for (int i = 0; i < rates.size(); i++) {
+            ExchangeRate rate = rates.get(i);
+            currencies[i] = rate.getCurrency();
+            dates[i] = Date.valueOf(rate.getRateDate());
+            bids[i] = rate.getBid();
+            asks[i] = rate.getAsk();
+            names[i] = rate.getCurrencyName();
+        }
+
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, connection.createArrayOf("varchar", currencies));
+            ps.setArray(2, connection.createArrayOf("date", dates));
+            ps.setArray(3, connection.createArrayOf("numeric", bids));
+            ps.setArray(4, connection.createArrayOf("numeric", asks));
+            ps.setArray(5, connection.createArrayOf("varchar", names));
+            return ps;
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.aeh.currencyexchange.model.IdempotencyKey;
+
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long>, IdempotencyKeyRepositoryCustom {
+
+    /**
+     * Find an idempotency key of a user
+     *
+     * @param email user's email
+     * @param key   Idempotency-Key header value
+     * @return Optional containing the key if it was recorded
+     */
+    @Query("SELECT k FROM IdempotencyKey k WHERE k.user.email = :email AND k.idempotencyKey = :key")
+    Optional<IdempotencyKey> findByUserEmailAndKey(@Param("email") String email, @Param("key") String key);
+}
@@ -0,0 +1,32 @@
+package pl.aeh.currencyexchange.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single-statement idempotency key writes.
+ * Keys are recorded in the transaction of the guarded operation, so a key and the
+ * wallet changes it stands for commit or roll back together.
+ */
+public interface IdempotencyKeyRepositoryCustom {
+
+    /**
+     * Insert a completed key with its response unless the user already has the key.
+     * Blocks while another open transaction holds the same key, until it commits or rolls back.
+     *
+     * @param email        owner's email
+     * @param key          Idempotency-Key header value
+     * @param operation    guarded operation
+     * @param requestHash  hash of the request body
+     * @param responseBody serialized response
+     * @return true if the key was recorded, false when it already exists
+     */
+    boolean record(String email, String key, String operation, String requestHash, String responseBody);
+
+    /**
+     * Delete keys older than the retention period
+     *
+     * @param cutoff keys created before this moment are deleted
+     * @return number of deleted keys
+     */
+    int purgeCreatedBefore(LocalDateTime cutoff);
+}
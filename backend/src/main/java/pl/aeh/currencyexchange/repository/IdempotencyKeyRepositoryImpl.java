@@ -0,0 +1,38 @@
+package pl.aeh.currencyexchange.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * JDBC implementation of {@link IdempotencyKeyRepositoryCustom}.
+ * <p>
+ * Recording relies on the unique (user_id, idempotency_key) index: of two concurrent
+ * transactions recording the same key exactly one inserts the row, the other waits for
+ * it to commit and then inserts nothing.
+ */
+@RequiredArgsConstructor
+public class IdempotencyKeyRepositoryImpl implements IdempotencyKeyRepositoryCustom {
+
+    private static final String RECORD_SQL =
+            "INSERT INTO idempotency_keys " +
+            "(user_id, idempotency_key, operation, request_hash, response_body, created_at) " +
+            "SELECT id, ?, ?, ?, ?, CURRENT_TIMESTAMP FROM users WHERE email = ? " +
+            "ON CONFLICT (user_id, idempotency_key) DO NOTHING";
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean record(String email, String key, String operation, String requestHash, String responseBody) {
+        return jdbcTemplate.update(RECORD_SQL, key, operation, requestHash, responseBody, email) == 1;
+    }
+
+    @Override
+    public int purgeCreatedBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(cutoff));
+    }
+}
@@ -0,0 +1,24 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pl.aeh.currencyexchange.model.RateBackfillCheckpoint;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface RateBackfillCheckpointRepository extends JpaRepository<RateBackfillCheckpoint, Long> {
+
+    /**
+     * Find completed chunks overlapping a date range
+     *
+     * @param from start date
+     * @param to   end date
+     * @return List of checkpoints
+     */
+    @Query("SELECT c FROM RateBackfillCheckpoint c WHERE c.chunkStart <= :to AND c.chunkEnd >= :from")
+    List<RateBackfillCheckpoint> findAllOverlapping(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
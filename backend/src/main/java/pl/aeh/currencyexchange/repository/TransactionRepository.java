@@ -1,11 +1,16 @@
 package pl.aeh.currencyexchange.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pl.aeh.currencyexchange.dto.TransactionDto;
 import pl.aeh.currencyexchange.model.Transaction;
 import pl.aeh.currencyexchange.model.TransactionStatus;
 import pl.aeh.currencyexchange.model.TransactionType;
@@ -13,10 +18,14 @@ import pl.aeh.currencyexchange.model.TransactionType;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    String DTO_COLUMNS = "t.id, t.fromCurrency, t.toCurrency, t.fromAmount, t.toAmount, " +
+            "t.exchangeRate, t.status, t.createdAt, t.type";
+
     /**
      * Find all transactions for a user
      *
@@ -42,6 +51,58 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      */
     Page<Transaction> findAllByUserId(Long userId, Pageable pageable);
 
+    /**
+     * A user's whole history as DTOs, newest first. Selects only the DTO columns, no entities are managed.
+     *
+     * @param email user's email
+     * @return List of transaction DTOs
+     */
+    @Query("SELECT new pl.aeh.currencyexchange.dto.TransactionDto(" + DTO_COLUMNS + ") " +
+            "FROM Transaction t WHERE t.user.email = :email ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionDto> findDtosByUserEmail(@Param("email") String email);
+
+    /**
+     * First page of a user's history in keyset order (newest first, ties broken by ID)
+     *
+     * @param email user's email
+     * @param limit maximum number of rows
+     * @return List of transaction DTOs
+     */
+    @Query("SELECT new pl.aeh.currencyexchange.dto.TransactionDto(" + DTO_COLUMNS + ") " +
+            "FROM Transaction t WHERE t.user.email = :email ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionDto> findPageByUserEmail(@Param("email") String email, Limit limit);
+
+    /**
+     * Next page of a user's history: rows strictly after the (createdAt, id) cursor in keyset order.
+     * Served by idx_transactions_user_created_id without an OFFSET scan.
+     *
+     * @param email     user's email
+     * @param createdAt creation time of the last row of the previous page
+     * @param id        ID of the last row of the previous page
+     * @param limit     maximum number of rows
+     * @return List of transaction DTOs
+     */
+    @Query("SELECT new pl.aeh.currencyexchange.dto.TransactionDto(" + DTO_COLUMNS + ") " +
+            "FROM Transaction t WHERE t.user.email = :email " +
+            "AND (t.createdAt, t.id) < (:createdAt, :id) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionDto> findPageByUserEmailAfter(@Param("email") String email,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
+
+    /**
+     * Stream a user's whole history in keyset order, fetching rows from the database in bounded chunks.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @param email user's email
+     * @return Stream of transaction DTOs
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new pl.aeh.currencyexchange.dto.TransactionDto(" + DTO_COLUMNS + ") " +
+            "FROM Transaction t WHERE t.user.email = :email ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<TransactionDto> streamAllByUserEmail(@Param("email") String email);
+
     /**
      * Find transactions by user ID and type
      *
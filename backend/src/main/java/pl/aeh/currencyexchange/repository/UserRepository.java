@@ -5,7 +5,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.UserRole;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -53,4 +55,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT u.enabled FROM User u WHERE u.email = :email")
     Optional<Boolean> isUserEnabled(@Param("email") String email);
+
+    /**
+     * Get emails of all disabled users
+     *
+     * @return List of emails
+     */
+    @Query("SELECT u.email FROM User u WHERE u.enabled = false")
+    List<String> findDisabledEmails();
+
+    /**
+     * Get emails of all users with a role
+     *
+     * @param role user role
+     * @return List of emails
+     */
+    @Query("SELECT u.email FROM User u WHERE u.role = :role")
+    List<String> findEmailsByRole(@Param("role") UserRole role);
 }
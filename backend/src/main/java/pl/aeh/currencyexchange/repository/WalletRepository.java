@@ -1,19 +1,23 @@
 package pl.aeh.currencyexchange.repository;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pl.aeh.currencyexchange.dto.WalletDto;
 import pl.aeh.currencyexchange.model.Wallet;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface WalletRepository extends JpaRepository<Wallet, Long> {
+public interface WalletRepository extends JpaRepository<Wallet, Long>, WalletRepositoryCustom {
 
     /**
      * Find wallet by user ID and currency code
@@ -38,6 +42,24 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     @Query("SELECT w FROM Wallet w WHERE w.user.id = :userId AND w.currency = :currency")
     Optional<Wallet> findByUserIdAndCurrencyWithLock(@Param("userId") Long userId, @Param("currency") String currency);
 
+    /**
+     * Lock a user's wallets in the given currencies with one {@code SELECT ... FOR UPDATE NOWAIT}.
+     * Rows are locked in ascending id order, so concurrent mutations of the same wallets never deadlock;
+     * a row locked by another transaction fails the query immediately instead of waiting.
+     * Must run before the wallets are loaded any other way in the persistence context, so the
+     * returned entities carry the balances current at lock time.
+     *
+     * @param email      owner's email
+     * @param currencies currency codes of the wallets to lock (missing wallets are skipped)
+     * @return locked wallets ordered by id
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "0"))
+    @Query("SELECT w FROM Wallet w WHERE w.user.id = (SELECT u.id FROM User u WHERE u.email = :email) " +
+            "AND w.currency IN :currencies ORDER BY w.id")
+    List<Wallet> lockByUserEmailAndCurrencies(@Param("email") String email,
+                                              @Param("currencies") Collection<String> currencies);
+
     /**
      * Find all wallets for a user
      *
@@ -55,6 +77,17 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     // ZMIANA: OrderByCurrency -> OrderByCurrencyCode
     List<Wallet> findAllByUserIdOrderByCurrencyAsc(Long userId);
 
+    /**
+     * Find all wallets of a user as DTOs ordered by currency code.
+     * Selects only the DTO columns, no entities are managed.
+     *
+     * @param email user's email
+     * @return List of wallet DTOs
+     */
+    @Query("SELECT new pl.aeh.currencyexchange.dto.WalletDto(w.id, w.currency, w.balance) " +
+            "FROM Wallet w WHERE w.user.email = :email ORDER BY w.currency")
+    List<WalletDto> findDtosByUserEmail(@Param("email") String email);
+
     /**
      * Check if wallet exists for user and currency code
      *
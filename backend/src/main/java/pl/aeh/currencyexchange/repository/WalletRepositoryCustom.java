@@ -0,0 +1,56 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Single-statement balance mutations that bypass the persistence context
+ */
+public interface WalletRepositoryCustom {
+
+    /**
+     * Debit one wallet, credit (or create) another and append the ledger row in one statement.
+     * The debit only applies when the source balance covers {@code debitAmount}.
+     *
+     * @param email        owner's email
+     * @param fromCurrency currency of the debited wallet
+     * @param debitAmount  amount taken from the source wallet
+     * @param toCurrency   currency of the credited wallet (created when missing)
+     * @param creditAmount amount added to the target wallet
+     * @param rate         exchange rate recorded on the ledger row
+     * @param description  ledger description
+     * @return the inserted (detached) ledger row, or empty when nothing was changed
+     *         because the user or source wallet is missing or the balance is insufficient
+     */
+    Optional<Transaction> transferAtomically(String email, String fromCurrency, BigDecimal debitAmount,
+                                             String toCurrency, BigDecimal creditAmount,
+                                             BigDecimal rate, String description);
+
+    /**
+     * Credit an existing wallet and append a DEPOSIT ledger row in one statement.
+     *
+     * @param email       owner's email
+     * @param currency    currency of the credited wallet
+     * @param amount      amount to add
+     * @param description ledger description
+     * @return the (detached) wallet with its new balance, or empty when the wallet does not exist
+     */
+    Optional<Wallet> depositAtomically(String email, String currency, BigDecimal amount, String description);
+
+    /**
+     * Write the balances of wallets loaded earlier, creating wallets that do not exist yet.
+     * Each existing wallet is only written when its version still matches the one it was loaded
+     * with; written wallets get their new version and new wallets their ID and version.
+     *
+     * @param userId  owner's ID
+     * @param wallets wallets whose balance should be stored
+     * @return number of written rows
+     * @throws OptimisticLockingFailureException when a wallet was changed or created by another writer
+     */
+    int writeBalances(Long userId, Collection<Wallet> wallets);
+}
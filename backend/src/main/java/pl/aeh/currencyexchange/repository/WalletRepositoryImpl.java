@@ -0,0 +1,187 @@
+package pl.aeh.currencyexchange.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.model.TransactionStatus;
+import pl.aeh.currencyexchange.model.TransactionType;
+import pl.aeh.currencyexchange.model.Wallet;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC implementation of {@link WalletRepositoryCustom}.
+ * <p>
+ * The transfer and deposit statements use PostgreSQL data-modifying CTEs: every step only
+ * sees rows produced by the previous one, so a failed balance guard turns the credit and
+ * the ledger insert into no-ops and the whole statement affects nothing.
+ * <p>
+ * Ledger rows take their ID from the same pooled allocator as {@link Transaction} entities,
+ * so the transactions table has a single source of IDs and no column default.
+ */
+@RequiredArgsConstructor
+public class WalletRepositoryImpl implements WalletRepositoryCustom {
+
+    private static final String TRANSFER_SQL =
+            "WITH debit AS (" +
+            "    UPDATE wallets w SET balance = w.balance - ?, version = w.version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "    FROM users u " +
+            "    WHERE u.email = ? AND w.user_id = u.id AND w.currency = ? AND w.balance >= ? " +
+            "    RETURNING w.user_id" +
+            "), credit AS (" +
+            "    INSERT INTO wallets (user_id, currency, balance, version, created_at, updated_at) " +
+            "    SELECT user_id, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM debit " +
+            "    ON CONFLICT (user_id, currency) DO UPDATE " +
+            "    SET balance = wallets.balance + EXCLUDED.balance, version = wallets.version + 1, updated_at = EXCLUDED.updated_at " +
+            "    RETURNING user_id" +
+            ") " +
+            "INSERT INTO transactions (id, user_id, type, from_currency, to_currency, from_amount, to_amount, " +
+            "                          exchange_rate, description, status, created_at, updated_at) " +
+            "SELECT ?, user_id, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM credit " +
+            "RETURNING id, created_at";
+
+    private static final String DEPOSIT_SQL =
+            "WITH credit AS (" +
+            "    UPDATE wallets w SET balance = w.balance + ?, version = w.version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "    FROM users u " +
+            "    WHERE u.email = ? AND w.user_id = u.id AND w.currency = ? " +
+            "    RETURNING w.id, w.user_id, w.balance" +
+            "), ledger AS (" +
+            "    INSERT INTO transactions (id, user_id, type, from_currency, to_currency, from_amount, to_amount, " +
+            "                              exchange_rate, description, status, created_at, updated_at) " +
+            "    SELECT ?, user_id, ?, ?, ?, ?, ?, 1, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM credit " +
+            "    RETURNING id" +
+            ") " +
+            "SELECT credit.id, credit.balance FROM credit, ledger";
+
+    private static final String UPDATE_BALANCE_SQL =
+            "UPDATE wallets SET balance = ?, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ? AND version = ?";
+
+    private static final String INSERT_WALLET_SQL =
+            "INSERT INTO wallets (user_id, currency, balance, version, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (user_id, currency) DO NOTHING " +
+            "RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Transaction> transferAtomically(String email, String fromCurrency, BigDecimal debitAmount,
+                                                    String toCurrency, BigDecimal creditAmount,
+                                                    BigDecimal rate, String description) {
+        List<Transaction> inserted = jdbcTemplate.query(TRANSFER_SQL,
+                (rs, rowNum) -> Transaction.builder()
+                        .id(rs.getLong("id"))
+                        .type(TransactionType.BUY)
+                        .fromCurrency(fromCurrency)
+                        .toCurrency(toCurrency)
+                        .fromAmount(debitAmount)
+                        .toAmount(creditAmount)
+                        .exchangeRate(rate)
+                        .description(description)
+                        .status(TransactionStatus.COMPLETED)
+                        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                        .build(),
+                debitAmount, email, fromCurrency, debitAmount,
+                toCurrency, creditAmount,
+                nextTransactionId(), TransactionType.BUY.name(), fromCurrency, toCurrency, debitAmount, creditAmount,
+                rate, description, TransactionStatus.COMPLETED.name());
+
+        return inserted.stream().findFirst();
+    }
+
+    @Override
+    public Optional<Wallet> depositAtomically(String email, String currency, BigDecimal amount, String description) {
+        List<Wallet> credited = jdbcTemplate.query(DEPOSIT_SQL,
+                (rs, rowNum) -> Wallet.builder()
+                        .id(rs.getLong("id"))
+                        .currency(currency)
+                        .balance(rs.getBigDecimal("balance"))
+                        .build(),
+                amount, email, currency,
+                nextTransactionId(), TransactionType.DEPOSIT.name(), currency, currency, amount, amount,
+                description, TransactionStatus.COMPLETED.name());
+
+        return credited.stream().findFirst();
+    }
+
+    /**
+     * Next ID of the {@code transactions_id_seq} block Hibernate has allocated, the same one
+     * {@code saveAll} uses, so an insert here costs one ID and, at most once per block, a {@code nextval}
+     */
+    private long nextTransactionId() {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Transaction.class)
+                .getGenerator();
+        return (Long) generator.generate(session, null, null, EventType.INSERT);
+    }
+
+    @Override
+    public int writeBalances(Long userId, Collection<Wallet> wallets) {
+        List<Wallet> existing = new ArrayList<>(wallets.size());
+        for (Wallet wallet : wallets) {
+            if (wallet.getId() == null) {
+                insertWallet(userId, wallet);
+            } else {
+                existing.add(wallet);
+            }
+        }
+        if (existing.isEmpty()) {
+            return wallets.size();
+        }
+
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Wallet wallet = existing.get(i);
+                ps.setBigDecimal(1, wallet.getBalance());
+                ps.setLong(2, wallet.getId());
+                ps.setLong(3, wallet.getVersion());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return existing.size();
+            }
+        });
+
+        // Updates are never rewritten into multi-row statements, so every count is exact
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new OptimisticLockingFailureException(
+                        "Wallet " + existing.get(i).getId() + " was changed by another writer");
+            }
+        }
+        existing.forEach(wallet -> wallet.setVersion(wallet.getVersion() + 1));
+        return wallets.size();
+    }
+
+    private void insertWallet(Long userId, Wallet wallet) {
+        List<Long> ids = jdbcTemplate.queryForList(INSERT_WALLET_SQL, Long.class,
+                userId, wallet.getCurrency(), wallet.getBalance());
+        if (ids.isEmpty()) {
+            throw new OptimisticLockingFailureException(
+                    wallet.getCurrency() + " wallet of user " + userId + " was created by another writer");
+        }
+        wallet.setId(ids.get(0));
+        wallet.setVersion(0L);
+    }
+}
@@ -1,14 +1,20 @@
 package pl.aeh.currencyexchange.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -16,10 +22,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * JWT Authentication Filter
- * Intercepts requests and validates JWT tokens
+ * Intercepts requests and validates JWT tokens.
+ * With {@code jwt.stateless=true} the principal is rebuilt from the token claims
+ * (checked against {@link TokenRevocationList} for disabled accounts and revoked roles) instead of being loaded from the database;
+ * until the revocation list has been loaded after startup, the user is loaded from the database as in classic mode.
+ * Bearer token handling is timed under {@code jwt.authentication} by mode and result.
  */
 @Component
 @RequiredArgsConstructor
@@ -28,6 +39,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationList tokenRevocationList;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(
@@ -48,33 +64,82 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         // Extract JWT token
         jwt = authHeader.substring(7);
-        
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "skipped";
         try {
-            // Extract username from JWT
-            userEmail = jwtUtil.extractUsername(jwt);
+            // Verify signature and expiration once, then read everything from the claims
+            Claims claims = jwtUtil.parseClaims(jwt);
+            userEmail = claims.getSubject();
 
             // If username is present and user is not already authenticated
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-                // Validate token
-                if (jwtUtil.validateToken(jwt, userDetails)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    // Set authentication in security context
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    log.debug("User {} authenticated successfully", userEmail);
+                UserDetails userDetails = stateless && tokenRevocationList.isLoaded() ? fromClaims(claims) : null;
+
+                if (userDetails == null) {
+                    // Classic mode, a token issued before roles were embedded, or a revocation list not loaded yet
+                    UserDetails storedUser = this.userDetailsService.loadUserByUsername(userEmail);
+                    if (storedUser.isEnabled()) {
+                        authenticate(request, storedUser);
+                        result = "authenticated";
+                    } else {
+                        log.debug("Rejected token of disabled user {}", userEmail);
+                        result = "rejected";
+                    }
+                } else if (!userDetails.isEnabled() || tokenRevocationList.isRevoked(userEmail)) {
+                    log.debug("Rejected token of disabled user {}", userEmail);
+                    result = "rejected";
+                } else if (tokenRevocationList.hasRevokedRole(userEmail, userDetails.getAuthorities())) {
+                    log.debug("Rejected token of user {} claiming a revoked role", userEmail);
+                    result = "rejected";
+                } else {
+                    authenticate(request, userDetails);
+                    result = "authenticated";
                 }
             }
         } catch (Exception e) {
             log.error("Cannot set user authentication: {}", e.getMessage());
+            result = "invalid";
+        } finally {
+            sample.stop(meterRegistry.timer("jwt.authentication",
+                    "mode", stateless ? "stateless" : "classic",
+                    "result", result));
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticate(HttpServletRequest request, UserDetails userDetails) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        // Set authentication in security context
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        log.debug("User {} authenticated successfully", userDetails.getUsername());
+    }
+
+    /**
+     * Build the principal from the role and enabled claims, without touching the database
+     *
+     * @return user details, or null when the token does not carry the claims
+     */
+    private UserDetails fromClaims(Claims claims) {
+        List<?> roles = claims.get(JwtUtil.ROLES_CLAIM, List.class);
+        Boolean enabled = claims.get(JwtUtil.ENABLED_CLAIM, Boolean.class);
+        if (roles == null || enabled == null) {
+            return null;
+        }
+
+        return User.withUsername(claims.getSubject())
+                .password("")
+                .authorities(roles.stream()
+                        .map(role -> new SimpleGrantedAuthority(role.toString()))
+                        .toList())
+                .disabled(!enabled)
+                .build();
+    }
 }
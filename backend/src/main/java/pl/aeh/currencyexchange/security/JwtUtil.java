@@ -1,18 +1,27 @@
 package pl.aeh.currencyexchange.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import javax.crypto.SecretKey;
+
 /**
  * Utility class for JWT token operations
  * Handles token generation, validation, and extraction of claims
@@ -20,12 +29,48 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
 
+    /**
+     * Granted authority names (e.g. {@code ROLE_USER}) embedded for stateless authentication
+     */
+    public static final String ROLES_CLAIM = "roles";
+
+    /**
+     * Whether the account was enabled when the token was issued
+     */
+    public static final String ENABLED_CLAIM = "enabled";
+
     @Value("${jwt.secret:404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970}")
     private String secretKey;
 
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private Long jwtExpiration;
 
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheSize = 10_000;
+
+    private SecretKey signKey;
+    private JwtParser parser;
+
+    /**
+     * Verified tokens mapped to their claims, each entry expiring together with its token
+     */
+    private Cache<String, Claims> verifiedTokens;
+
+    /**
+     * Decode the key and build the parser once; both are immutable and thread-safe
+     */
+    @PostConstruct
+    void init() {
+        signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        parser = Jwts.parser()
+                .verifyWith(signKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
     /**
      * Extract username (email) from JWT token
      *
@@ -60,17 +105,34 @@ public class JwtUtil {
     }
 
     /**
-     * Extract all claims from JWT token
+     * Verify the token once (signature and expiration) and return its claims
+     *
+     * @param token JWT token
+     * @return all claims
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
+    }
+
+    /**
+     * Extract all claims from JWT token.
+     * A token whose signature was already verified is served from the cache until it expires.
      *
      * @param token JWT token
      * @return all claims
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignKey())
-                .build()
+        Claims cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        Claims claims = parser
                 .parseSignedClaims(token)
                 .getPayload();
+        verifiedTokens.put(token, claims);
+        return claims;
     }
 
     /**
@@ -103,6 +165,10 @@ public class JwtUtil {
      */
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        claims.put(ENABLED_CLAIM, userDetails.isEnabled());
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -131,20 +197,10 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSignKey(), Jwts.SIG.HS256)
+                .signWith(signKey, Jwts.SIG.HS256)
                 .compact();
     }
 
-    /**
-     * Get signing key for JWT
-     *
-     * @return signing key
-     */
-    private javax.crypto.SecretKey getSignKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
     /**
      * Get token expiration time in milliseconds
      *
@@ -153,4 +209,29 @@ public class JwtUtil {
     public Long getExpirationTime() {
         return jwtExpiration;
     }
+
+    /**
+     * Expires a cached token exactly when the token itself expires
+     */
+    private static final class TokenExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
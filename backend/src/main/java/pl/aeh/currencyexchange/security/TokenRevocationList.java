@@ -0,0 +1,92 @@
+package pl.aeh.currencyexchange.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import pl.aeh.currencyexchange.model.UserRole;
+import pl.aeh.currencyexchange.repository.UserRepository;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * In-memory list of users whose tokens must be rejected in stateless JWT mode.
+ * <p>
+ * Stateless authentication trusts the role and enabled claims of a token, so an account
+ * disabled or demoted after the token was issued would keep its access until the token
+ * expires. This list closes that gap by periodically loading the disabled accounts and the
+ * current holders of the privileged {@code ADMIN} role, which is two queries every
+ * {@code jwt.revocation.refresh-interval} instead of one per request. Tokens claiming a role
+ * the user no longer holds are rejected, so a demoted admin has to sign in again.
+ * <p>
+ * Until the first refresh has completed the lists are unknown rather than empty, so
+ * {@link #isLoaded()} is false and tokens are checked against the database instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationList {
+
+    private static final String ADMIN_AUTHORITY = "ROLE_" + UserRole.ADMIN.name();
+
+    private final UserRepository userRepository;
+
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
+
+    private volatile Set<String> disabledUsers = Set.of();
+
+    private volatile Set<String> admins = Set.of();
+
+    private volatile boolean loaded;
+
+    /**
+     * Reload disabled accounts and admins from the database
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval:PT30S}")
+    public void refresh() {
+        if (!stateless) {
+            return;
+        }
+
+        Set<String> disabled = Set.copyOf(userRepository.findDisabledEmails());
+        if (disabled.size() != disabledUsers.size()) {
+            log.info("Token revocation list refreshed: {} disabled users", disabled.size());
+        }
+        disabledUsers = disabled;
+        admins = Set.copyOf(userRepository.findEmailsByRole(UserRole.ADMIN));
+        loaded = true;
+    }
+
+    /**
+     * @return true once both lists were loaded, so {@link #isRevoked} and {@link #hasRevokedRole} can be trusted
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Check whether tokens of the given user must be rejected
+     *
+     * @param email user's email
+     * @return true if the account is disabled
+     */
+    public boolean isRevoked(String email) {
+        return disabledUsers.contains(email);
+    }
+
+    /**
+     * Check whether a token grants the user a privileged role the user no longer holds
+     *
+     * @param email       user's email
+     * @param authorities authorities claimed by the token
+     * @return true if the token claims {@code ROLE_ADMIN} and the user is not an admin anymore
+     */
+    public boolean hasRevokedRole(String email, Collection<? extends GrantedAuthority> authorities) {
+        return authorities.stream().anyMatch(authority -> ADMIN_AUTHORITY.equals(authority.getAuthority()))
+                && !admins.contains(email);
+    }
+}
@@ -0,0 +1,193 @@
+package pl.aeh.currencyexchange.service;
+
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable matrix of cross rates between every pair of non-PLN currencies.
+ * Currencies are indexed by ordinal (alphabetical order of codes) and the
+ * rates are stored in a dense row-major array: rate(from, to) = bid(from) / ask(to).
+ * Bid and ask are also kept as {@link FixedPoint} longs for allocation-free pricing.
+ */
+public final class CrossRateMatrix {
+
+    static final CrossRateMatrix EMPTY = of(Collections.emptyList());
+
+    private static final int RATE_SCALE = 6;
+
+    /**
+     * Marks a rate with more decimals than {@link FixedPoint#RATE_SCALE}
+     */
+    private static final long NOT_SCALED = Long.MIN_VALUE;
+
+    private final String[] currencies;
+    private final Map<String, Integer> ordinals;
+    private final BigDecimal[] bids;
+    private final BigDecimal[] asks;
+    private final long[] scaledBids;
+    private final long[] scaledAsks;
+    private final BigDecimal[] rates;
+    private final LocalDate rateDate;
+
+    private CrossRateMatrix(String[] currencies, BigDecimal[] bids, BigDecimal[] asks, LocalDate rateDate) {
+        int n = currencies.length;
+        this.currencies = currencies;
+        this.bids = bids;
+        this.asks = asks;
+        this.rateDate = rateDate;
+        this.scaledBids = new long[n];
+        this.scaledAsks = new long[n];
+        this.ordinals = new HashMap<>(n * 2);
+        this.rates = new BigDecimal[n * n];
+        for (int from = 0; from < n; from++) {
+            ordinals.put(currencies[from], from);
+            scaledBids[from] = scaled(bids[from]);
+            scaledAsks[from] = scaled(asks[from]);
+            for (int to = 0; to < n; to++) {
+                rates[from * n + to] = from == to
+                        ? BigDecimal.ONE
+                        : bids[from].divide(asks[to], RATE_SCALE, RoundingMode.HALF_UP);
+            }
+        }
+    }
+
+    /**
+     * Build the matrix for a set of rates
+     *
+     * @param latestRates latest rate per currency
+     * @return cross-rate matrix
+     */
+    public static CrossRateMatrix of(Collection<ExchangeRateDto> latestRates) {
+        ExchangeRateDto[] sorted = latestRates.stream()
+                .sorted(Comparator.comparing(ExchangeRateDto::getCode))
+                .toArray(ExchangeRateDto[]::new);
+
+        String[] currencies = new String[sorted.length];
+        BigDecimal[] bids = new BigDecimal[sorted.length];
+        BigDecimal[] asks = new BigDecimal[sorted.length];
+        LocalDate rateDate = null;
+        for (int i = 0; i < sorted.length; i++) {
+            currencies[i] = sorted[i].getCode();
+            bids[i] = sorted[i].getBid();
+            asks[i] = sorted[i].getAsk();
+            if (rateDate == null || sorted[i].getRateDate().isAfter(rateDate)) {
+                rateDate = sorted[i].getRateDate();
+            }
+        }
+        return new CrossRateMatrix(currencies, bids, asks, rateDate);
+    }
+
+    /**
+     * Get ordinal of a currency
+     *
+     * @param currency currency code
+     * @return ordinal or -1 if the currency is not in the matrix
+     */
+    public int ordinal(String currency) {
+        Integer ordinal = ordinals.get(currency);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public boolean contains(String currency) {
+        return ordinals.containsKey(currency);
+    }
+
+    /**
+     * Get cross rate (bid of source / ask of target, scale 6)
+     */
+    public BigDecimal rate(int from, int to) {
+        return rates[from * currencies.length + to];
+    }
+
+    public BigDecimal bid(int ordinal) {
+        return bids[ordinal];
+    }
+
+    public BigDecimal ask(int ordinal) {
+        return asks[ordinal];
+    }
+
+    /**
+     * Whether the bid fits {@link FixedPoint#RATE_SCALE}, so {@link #scaledBid} does not throw
+     */
+    boolean hasScaledBid(int ordinal) {
+        return scaledBids[ordinal] != NOT_SCALED;
+    }
+
+    /**
+     * Whether the ask fits {@link FixedPoint#RATE_SCALE}, so {@link #scaledAsk} does not throw
+     */
+    boolean hasScaledAsk(int ordinal) {
+        return scaledAsks[ordinal] != NOT_SCALED;
+    }
+
+    /**
+     * Get bid as a {@link FixedPoint} rate
+     *
+     * @throws ArithmeticException when the bid has more than 6 decimals
+     */
+    long scaledBid(int ordinal) {
+        return checkScaled(scaledBids[ordinal]);
+    }
+
+    /**
+     * Get ask as a {@link FixedPoint} rate
+     *
+     * @throws ArithmeticException when the ask has more than 6 decimals
+     */
+    long scaledAsk(int ordinal) {
+        return checkScaled(scaledAsks[ordinal]);
+    }
+
+    public int size() {
+        return currencies.length;
+    }
+
+    public List<String> getCurrencies() {
+        return Collections.unmodifiableList(Arrays.asList(currencies));
+    }
+
+    /**
+     * Latest rate date among the currencies in the matrix
+     */
+    public LocalDate getRateDate() {
+        return rateDate;
+    }
+
+    /**
+     * Copy the matrix into a two-dimensional array (rows = source currency)
+     */
+    public BigDecimal[][] toArray() {
+        int n = currencies.length;
+        BigDecimal[][] result = new BigDecimal[n][];
+        for (int from = 0; from < n; from++) {
+            result[from] = Arrays.copyOfRange(rates, from * n, (from + 1) * n);
+        }
+        return result;
+    }
+
+    private static long scaled(BigDecimal rate) {
+        try {
+            return FixedPoint.toScaled(rate, FixedPoint.RATE_SCALE);
+        } catch (ArithmeticException e) {
+            return NOT_SCALED;
+        }
+    }
+
+    private static long checkScaled(long scaledRate) {
+        if (scaledRate == NOT_SCALED) {
+            throw new ArithmeticException("Rate has more than " + FixedPoint.RATE_SCALE + " decimals");
+        }
+        return scaledRate;
+    }
+}
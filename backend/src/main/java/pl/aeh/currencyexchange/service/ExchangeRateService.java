@@ -1,12 +1,17 @@
 package pl.aeh.currencyexchange.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import pl.aeh.currencyexchange.client.NbpClient;
+import pl.aeh.currencyexchange.dto.CrossRatesDto;
 import pl.aeh.currencyexchange.dto.ExchangeRateDto;
 import pl.aeh.currencyexchange.dto.nbp.NbpRateDto;
 import pl.aeh.currencyexchange.dto.nbp.NbpTableDto;
@@ -16,27 +21,82 @@ import pl.aeh.currencyexchange.repository.ExchangeRateRepository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ExchangeRateService {
 
+    private static final String CURRENT_RATES_KEY = "current";
+    private static final String PLN = "PLN";
+
     private final NbpClient nbpClient;
     private final ExchangeRateRepository exchangeRateRepository;
+    private final RateSnapshotStore rateSnapshotStore;
+    private final RateHistoryStore rateHistoryStore;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final SingleFlight<String, List<ExchangeRateDto>> currentRatesFlight = new SingleFlight<>();
+    private final SingleFlight<LocalDate, List<ExchangeRateDto>> ratesByDateFlight = new SingleFlight<>();
+
+    /**
+     * Load the latest persisted rates into the in-memory snapshot on startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpRateSnapshot() {
+        try {
+            List<ExchangeRateDto> latestRates = exchangeRateRepository.findAllLatest().stream()
+                    .map(ExchangeRateService::mapToDto)
+                    .collect(Collectors.toList());
+            rateSnapshotStore.publish(latestRates);
+            log.info("Rate snapshot warmed up with {} currencies", latestRates.size());
+        } catch (Exception e) {
+            log.warn("Could not warm up rate snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Load the full rate history into the in-memory history store on startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpRateHistory() {
+        try {
+            rateHistoryStore.load(exchangeRateRepository.findAllByOrderByCurrencyAscRateDateAsc().stream()
+                    .map(ExchangeRateService::mapToDto)
+                    .collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.warn("Could not load rate history store, history is served from DB: {}", e.getMessage());
+        }
+    }
 
     /**
      * Fetch current rates from NBP, save to DB, and return them.
-     * Uses cache to avoid frequent calls to NBP.
+     * Uses cache to avoid frequent calls to NBP; concurrent misses wait for a single load.
      */
-    @Transactional
-    @Cacheable(value = "currentRates")
+    @Cacheable(value = "currentRates", sync = true)
     public List<ExchangeRateDto> fetchCurrentRates() {
+        return loadCurrentRates();
+    }
+
+    /**
+     * Fetch current rates from NBP bypassing the cache.
+     * Used by the currentRates cache loader to refresh the entry ahead of expiry.
+     * The NBP call runs outside any transaction; only the write of the fetched table is transactional.
+     * Concurrent callers share one in-flight load, including the DB fallback when NBP fails.
+     */
+    public List<ExchangeRateDto> loadCurrentRates() {
+        return currentRatesFlight.execute(CURRENT_RATES_KEY, this::fetchAndStoreCurrentRates);
+    }
+
+    private List<ExchangeRateDto> fetchAndStoreCurrentRates() {
         log.info("Fetching current exchange rates from NBP");
         try {
             NbpTableDto nbpTable = nbpClient.fetchCurrentRates();
-            return processNbpTable(nbpTable);
+            return saveNbpTable(nbpTable);
         } catch (Exception e) {
             log.error("Failed to fetch current rates from NBP: {}", e.getMessage());
             // Fallback to latest rates from DB if NBP fails
@@ -45,31 +105,36 @@ public class ExchangeRateService {
                 throw e; // Rethrow if DB is also empty
             }
             log.info("Returning latest rates from DB due to NBP failure");
-            return latestRates.stream()
-                    .map(this::mapToDto)
+            List<ExchangeRateDto> fallbackRates = latestRates.stream()
+                    .map(ExchangeRateService::mapToDto)
                     .collect(Collectors.toList());
+            rateSnapshotStore.publish(fallbackRates);
+            return fallbackRates;
         }
     }
 
     /**
      * Fetch rates for specific date.
-     * First checks DB, if missing fetches from NBP.
+     * First checks DB, if missing fetches from NBP (once for concurrent requests of the same date).
      */
-    @Transactional
     public List<ExchangeRateDto> fetchRatesByDate(LocalDate date) {
         log.debug("Fetching rates for date: {}", date);
         
         List<ExchangeRate> existingRates = exchangeRateRepository.findAllByRateDate(date);
         if (!existingRates.isEmpty()) {
             return existingRates.stream()
-                    .map(this::mapToDto)
+                    .map(ExchangeRateService::mapToDto)
                     .collect(Collectors.toList());
         }
 
+        return ratesByDateFlight.execute(date, () -> fetchAndStoreRatesByDate(date));
+    }
+
+    private List<ExchangeRateDto> fetchAndStoreRatesByDate(LocalDate date) {
         log.info("Rates for date {} not found in DB, fetching from NBP", date);
         try {
             NbpTableDto nbpTable = nbpClient.fetchRatesByDate(date);
-            return processNbpTable(nbpTable);
+            return saveNbpTable(nbpTable);
         } catch (ResourceNotFoundException e) {
             log.warn("Rates for date {} not found in NBP", date);
             throw e;
@@ -78,69 +143,145 @@ public class ExchangeRateService {
 
     /**
      * Get rate history for a currency within date range.
+     * Served from the in-memory history store once it is loaded.
      */
-    @Transactional(readOnly = true)
-    @Cacheable(value = "rateHistory", key = "#currency + #from + #to")
     public List<ExchangeRateDto> getRateHistory(String currency, LocalDate from, LocalDate to) {
         log.debug("Fetching rate history for {} from {} to {}", currency, from, to);
+        if (rateHistoryStore.isLoaded()) {
+            return rateHistoryStore.find(currency, from, to);
+        }
         return exchangeRateRepository.findAllByCurrencyAndRateDateBetween(currency, from, to).stream()
-                .map(this::mapToDto)
+                .map(ExchangeRateService::mapToDto)
                 .collect(Collectors.toList());
     }
 
     /**
      * Get latest rate for a specific currency.
+     * Served from the in-memory snapshot; the DB is only queried on a snapshot miss.
+     * Timed under {@code rates.current.lookup}, tagged with the source that answered (snapshot, db or nbp).
      */
-    @Transactional
     public ExchangeRateDto getCurrentRate(String currency) {
-        return exchangeRateRepository.findLatestByCurrency(currency)
-                .map(this::mapToDto)
-                .orElseGet(() -> {
-                    // Try to sync if not found
-                    fetchCurrentRates();
-                    return exchangeRateRepository.findLatestByCurrency(currency)
-                            .map(this::mapToDto)
-                            .orElseThrow(() -> new ResourceNotFoundException("Rate not found for currency: " + currency));
-                });
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String source = "snapshot";
+        try {
+            ExchangeRateDto snapshotRate = rateSnapshotStore.current().get(currency);
+            if (snapshotRate != null) {
+                return snapshotRate;
+            }
+
+            source = "db";
+            Optional<ExchangeRateDto> storedRate = exchangeRateRepository.findLatestByCurrency(currency)
+                    .map(ExchangeRateService::mapToDto);
+            if (storedRate.isPresent()) {
+                rateSnapshotStore.publish(List.of(storedRate.get()));
+                return storedRate.get();
+            }
+
+            // Try to sync if not found
+            source = "nbp";
+            fetchCurrentRates();
+            return exchangeRateRepository.findLatestByCurrency(currency)
+                    .map(ExchangeRateService::mapToDto)
+                    .orElseThrow(() -> new ResourceNotFoundException("Rate not found for currency: " + currency));
+        } finally {
+            sample.stop(meterRegistry.timer("rates.current.lookup", "source", source));
+        }
+    }
+
+    /**
+     * Get the cross-rate matrix for an exchange between two currencies, either of which may be PLN.
+     * Uses the snapshot matrix when every non-PLN currency is known, otherwise builds
+     * a matrix of the non-PLN currencies from the regular rate lookup.
+     */
+    public CrossRateMatrix getCrossRates(String fromCurrency, String toCurrency) {
+        CrossRateMatrix crossRates = rateSnapshotStore.current().getCrossRates();
+        if (isKnown(crossRates, fromCurrency) && isKnown(crossRates, toCurrency)) {
+            return crossRates;
+        }
+        return CrossRateMatrix.of(Stream.of(fromCurrency, toCurrency)
+                .filter(currency -> !PLN.equals(currency))
+                .map(this::getCurrentRate)
+                .toList());
+    }
+
+    private static boolean isKnown(CrossRateMatrix crossRates, String currency) {
+        return PLN.equals(currency) || crossRates.contains(currency);
+    }
+
+    /**
+     * Get the full cross-rate matrix of the current snapshot.
+     */
+    public CrossRatesDto getCrossRateMatrix() {
+        RateSnapshot snapshot = rateSnapshotStore.current();
+        if (snapshot.isEmpty()) {
+            fetchCurrentRates();
+            snapshot = rateSnapshotStore.current();
+        }
+
+        CrossRateMatrix crossRates = snapshot.getCrossRates();
+        return CrossRatesDto.builder()
+                .version(snapshot.getVersion())
+                .rateDate(crossRates.getRateDate())
+                .currencies(crossRates.getCurrencies())
+                .rates(crossRates.toArray())
+                .build();
     }
 
     /**
      * Sync rates from NBP (manually triggered or scheduled).
      * Evicts cache.
      */
-    @Transactional
-    @CacheEvict(value = {"currentRates", "rateHistory"}, allEntries = true)
+    @CacheEvict(value = "currentRates", allEntries = true)
     public void syncRatesFromNbp() {
         log.info("Starting manual synchronization of exchange rates");
         fetchCurrentRates();
         log.info("Synchronization completed");
     }
 
+    /**
+     * Persist a fetched NBP table in its own short transaction
+     */
+    private List<ExchangeRateDto> saveNbpTable(NbpTableDto nbpTable) {
+        return transactionTemplate.execute(status -> processNbpTable(nbpTable));
+    }
+
+    /**
+     * Persist an NBP table with one batched insert that skips rates already stored,
+     * then read the table back in one query.
+     */
     private List<ExchangeRateDto> processNbpTable(NbpTableDto nbpTable) {
         LocalDate rateDate = nbpTable.getEffectiveDate(); // or tradingDate? effectiveDate is usually what we want
-        
+
+        List<ExchangeRate> entities = toEntities(nbpTable);
+        int inserted = exchangeRateRepository.upsertAll(entities);
+        log.debug("Stored {} new rates out of {} for {}", inserted, entities.size(), rateDate);
+
+        List<ExchangeRateDto> rates = exchangeRateRepository.findAllByRateDate(rateDate).stream()
+                .map(ExchangeRateService::mapToDto)
+                .collect(Collectors.toList());
+
+        rateSnapshotStore.publish(rates);
+        rateHistoryStore.append(rates);
+        return rates;
+    }
+
+    /**
+     * Map an NBP table to (not yet persisted) exchange rate entities
+     */
+    static List<ExchangeRate> toEntities(NbpTableDto nbpTable) {
+        LocalDate rateDate = nbpTable.getEffectiveDate();
         return nbpTable.getRates().stream()
-                .map(nbpRate -> {
-                    // Check if exists
-                    if (exchangeRateRepository.existsByCurrencyAndRateDate(nbpRate.getCode(), rateDate)) {
-                        return exchangeRateRepository.findByCurrencyAndRateDate(nbpRate.getCode(), rateDate).get();
-                    }
-                    
-                    ExchangeRate entity = ExchangeRate.builder()
-                            .currency(nbpRate.getCode())
-                            .currencyName(nbpRate.getCurrency())
-                            .rateDate(rateDate)
-                            .bid(nbpRate.getBid())
-                            .ask(nbpRate.getAsk())
-                            .build();
-                    
-                    return exchangeRateRepository.save(entity);
-                })
-                .map(this::mapToDto)
+                .map(nbpRate -> ExchangeRate.builder()
+                        .currency(nbpRate.getCode())
+                        .currencyName(nbpRate.getCurrency())
+                        .rateDate(rateDate)
+                        .bid(nbpRate.getBid())
+                        .ask(nbpRate.getAsk())
+                        .build())
                 .collect(Collectors.toList());
     }
 
-    private ExchangeRateDto mapToDto(ExchangeRate entity) {
+    static ExchangeRateDto mapToDto(ExchangeRate entity) {
         return ExchangeRateDto.builder()
                 .id(entity.getId())
                 .currency(entity.getCurrencyName())
@@ -0,0 +1,104 @@
+package pl.aeh.currencyexchange.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point arithmetic on scaled longs for exchange pricing.
+ * Amounts are scaled by 10^4 and rates by 10^6, matching the DECIMAL(19, 4) balance and
+ * DECIMAL(19, 6) rate columns. Every operation rounds HALF_UP once, at the same point as the
+ * equivalent {@link BigDecimal} expression, so results are identical to it (value and scale).
+ * <p>
+ * Callers check {@link #isAmount} and {@link #fitsProduct} up front and price with BigDecimal
+ * when an input has more decimals than its scale or an intermediate product would leave the
+ * long range; the operations still throw {@link ArithmeticException} rather than overflow.
+ */
+final class FixedPoint {
+
+    static final int AMOUNT_SCALE = 4;
+    static final int RATE_SCALE = 6;
+
+    static final long RATE_ONE = 1_000_000L;
+
+    /**
+     * Integer digits of an amount whose scaled value fits a long with room to spare
+     */
+    private static final int MAX_AMOUNT_DIGITS = 14;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Convert to a scaled long without rounding
+     *
+     * @throws ArithmeticException when the value has more than {@code scale} decimals or does not fit a long
+     */
+    static long toScaled(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Whether {@link #toScaled} converts the value to an amount without throwing
+     */
+    static boolean isAmount(BigDecimal value) {
+        return value.scale() <= AMOUNT_SCALE && value.precision() - value.scale() <= MAX_AMOUNT_DIGITS;
+    }
+
+    /**
+     * Whether {@code a * b} stays in the long range, so the operation built on it does not throw
+     */
+    static boolean fitsProduct(long a, long b) {
+        return Math.multiplyHigh(a, b) == (a * b) >> 63;
+    }
+
+    static BigDecimal toAmount(long scaledAmount) {
+        return BigDecimal.valueOf(scaledAmount, AMOUNT_SCALE);
+    }
+
+    static BigDecimal toRate(long scaledRate) {
+        return BigDecimal.valueOf(scaledRate, RATE_SCALE);
+    }
+
+    /**
+     * PLN amount bought into a currency sold at {@code ask}:
+     * {@code amount.divide(ask, 4, HALF_UP)}
+     */
+    static long divideByRate(long scaledAmount, long scaledAsk) {
+        return divideHalfUp(Math.multiplyExact(scaledAmount, RATE_ONE), scaledAsk);
+    }
+
+    /**
+     * Currency amount sold for PLN at {@code bid}:
+     * {@code amount.multiply(bid).setScale(4, HALF_UP)}
+     */
+    static long multiplyByRate(long scaledAmount, long scaledBid) {
+        return divideHalfUp(Math.multiplyExact(scaledAmount, scaledBid), RATE_ONE);
+    }
+
+    /**
+     * Amount exchanged between two foreign currencies through PLN:
+     * {@code amount.multiply(bid).divide(ask, 4, HALF_UP)}
+     */
+    static long crossConvert(long scaledAmount, long scaledBid, long scaledAsk) {
+        return divideHalfUp(Math.multiplyExact(scaledAmount, scaledBid), scaledAsk);
+    }
+
+    /**
+     * Effective rate of an exchange: {@code target.divide(amount, 6, HALF_UP)}
+     */
+    static long effectiveRate(long scaledTarget, long scaledAmount) {
+        return divideHalfUp(Math.multiplyExact(scaledTarget, RATE_ONE), scaledAmount);
+    }
+
+    /**
+     * Integer division rounding half away from zero, like {@link RoundingMode#HALF_UP}
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        if (remainder != 0 && remainder >= Math.abs(divisor) - remainder) {
+            quotient += (dividend ^ divisor) < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
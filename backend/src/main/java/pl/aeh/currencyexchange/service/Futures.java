@@ -0,0 +1,31 @@
+package pl.aeh.currencyexchange.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Blocking hand-off from the threads that do the work (wallet writers, single-flight leaders) back to request threads
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Wait for {@code future} and rethrow a failure as the original runtime exception,
+     * so callers see the same exceptions as when the work ran on their own thread.
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Operation failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for operation result", e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package pl.aeh.currencyexchange.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.repository.IdempotencyKeyRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs wallet mutations at most once per {@code Idempotency-Key}.
+ * <p>
+ * The key is recorded with the serialized response by a single insert into the unique-indexed
+ * {@code idempotency_keys} table, inside the transaction of the wallet mutation: the key and the
+ * money commit or roll back together, so a failed or interrupted request leaves nothing behind
+ * and its retry simply runs again. A retry of a completed request gets the stored response
+ * without touching the wallets. Completed responses are also kept in a bounded in-memory LRU,
+ * so the common retry is answered without a query.
+ * <p>
+ * A retry arriving while the first request is still running on this instance is rejected with
+ * 409. On another instance both run, and the unique index lets only the first commit; the other
+ * rolls back its wallet changes and replays the first response.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.retention:P1D}")
+    private Duration retention = Duration.ofDays(1);
+
+    @Value("${idempotency.cache.max-size:10000}")
+    private long cacheMaxSize = 10_000;
+
+    private Cache<String, StoredResponse> recentResponses;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        recentResponses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    /**
+     * Run {@code operation} unless a request with the same key was already processed for this user
+     *
+     * @param email        user's email
+     * @param key          Idempotency-Key header value, or null to always run the operation
+     * @param operation    name of the guarded operation, part of the request fingerprint
+     * @param request      request body, part of the request fingerprint
+     * @param responseType type of the response, to read back a stored one
+     * @param work         the operation, given the step that records its response with the key;
+     *                     the operation must apply that step inside its wallet transaction
+     * @return the response of this or of the first request with the key
+     * @throws ConflictException        when the first request with the key is still in progress
+     * @throws IllegalArgumentException when the key is invalid or was used for a different request
+     */
+    public <T> T execute(String email, String key, String operation, Object request,
+                         Class<T> responseType, Function<UnaryOperator<T>, T> work) {
+        if (key == null) {
+            return work.apply(UnaryOperator.identity());
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters long");
+        }
+
+        String requestHash = fingerprint(operation, request);
+        String cacheKey = email + '\n' + key;
+
+        StoredResponse cached = recentResponses.getIfPresent(cacheKey);
+        if (cached != null) {
+            return replay(key, cached, requestHash, responseType);
+        }
+
+        if (!inFlight.add(cacheKey)) {
+            throw new ConflictException("A request with this " + HEADER + " is still being processed");
+        }
+        try {
+            Optional<StoredResponse> stored = findStored(email, key, requestHash);
+            if (stored.isPresent()) {
+                recentResponses.put(cacheKey, stored.get());
+                return replay(key, stored.get(), requestHash, responseType);
+            }
+
+            RecordedResponse recorded = new RecordedResponse();
+            T response;
+            try {
+                response = work.apply(result -> {
+                    String body = serialize(result);
+                    if (!idempotencyKeyRepository.record(email, key, operation, requestHash, body)) {
+                        throw new KeyTakenException();
+                    }
+                    recorded.body = body;
+                    return result;
+                });
+            } catch (KeyTakenException e) {
+                // Another instance committed the key first; our wallet changes rolled back with the insert
+                StoredResponse winner = findStored(email, key, requestHash)
+                        .orElseThrow(() -> new ConflictException("A request with this " + HEADER + " is still being processed"));
+                recentResponses.put(cacheKey, winner);
+                return replay(key, winner, requestHash, responseType);
+            }
+
+            if (recorded.body != null) {
+                recentResponses.put(cacheKey, new StoredResponse(requestHash, recorded.body));
+            }
+            return response;
+        } finally {
+            inFlight.remove(cacheKey);
+        }
+    }
+
+    /**
+     * Delete keys older than {@code idempotency.retention}
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int purged = idempotencyKeyRepository.purgeCreatedBefore(LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Look up the recorded response for the key
+     */
+    private Optional<StoredResponse> findStored(String email, String key, String requestHash) {
+        return idempotencyKeyRepository.findByUserEmailAndKey(email, key).map(existing -> {
+            checkSameRequest(existing.getRequestHash(), requestHash);
+            return new StoredResponse(existing.getRequestHash(), existing.getResponseBody());
+        });
+    }
+
+    private <T> T replay(String key, StoredResponse stored, String requestHash, Class<T> responseType) {
+        checkSameRequest(stored.requestHash(), requestHash);
+        log.debug("Replaying stored response for {} {}", HEADER, key);
+        try {
+            return objectMapper.readValue(stored.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response cannot be read", e);
+        }
+    }
+
+    private static void checkSameRequest(String storedHash, String requestHash) {
+        if (!storedHash.equals(requestHash)) {
+            throw new IllegalArgumentException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String serialize(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store idempotent response", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, String body) {
+    }
+
+    private static final class RecordedResponse {
+        private String body;
+    }
+
+    /**
+     * Thrown inside the wallet transaction when the key already exists, to roll the mutation back
+     */
+    private static final class KeyTakenException extends RuntimeException {
+        private KeyTakenException() {
+            super("Idempotency key already recorded", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package pl.aeh.currencyexchange.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.client.NbpClient;
+import pl.aeh.currencyexchange.dto.BackfillResultDto;
+import pl.aeh.currencyexchange.dto.nbp.NbpTableDto;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
+import pl.aeh.currencyexchange.model.ExchangeRate;
+import pl.aeh.currencyexchange.model.RateBackfillCheckpoint;
+import pl.aeh.currencyexchange.repository.ExchangeRateRepository;
+import pl.aeh.currencyexchange.repository.RateBackfillCheckpointRepository;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Backfills historical exchange rates from the NBP date-range endpoint.
+ * The range is split into chunks aligned to calendar quarters (always within the
+ * NBP limit of 93 days), chunks are fetched in parallel with bounded concurrency and
+ * every chunk is stored together with its checkpoint, so an interrupted backfill
+ * resumes where it stopped.
+ * <p>
+ * The range is clamped to the last date NBP has published a table for, and a chunk that ends
+ * today is stored without a checkpoint, so days published later are picked up by a rerun.
+ * <p>
+ * A multi-year backfill takes minutes, so the endpoint {@linkplain #start starts} it on a background
+ * thread and returns at once. Only one backfill runs at a time; its progress is updated as each
+ * chunk commits together with its checkpoint.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateBackfillService {
+
+    private final NbpClient nbpClient;
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final RateBackfillCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RateHistoryStore rateHistoryStore;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "rate-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Run lastRun;
+
+    @Value("${nbp.backfill.concurrency:4}")
+    private int concurrency;
+
+    @Value("${cache.nbp-publication.time:08:15}")
+    private String publicationTime = "08:15";
+
+    @Value("${cache.nbp-publication.zone:Europe/Warsaw}")
+    private ZoneId publicationZone = ZoneId.of("Europe/Warsaw");
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    /**
+     * Start a backfill for a date range (inclusive) on a background thread.
+     * The range is validated before the call returns; progress is reported by {@link #progress()}.
+     *
+     * @param from start date
+     * @param to   end date, clamped to the last published date
+     * @return progress of the started backfill
+     */
+    public BackfillResultDto start(LocalDate from, LocalDate to) {
+        Run run = begin(from, to);
+        try {
+            runner.execute(() -> execute(run));
+        } catch (RuntimeException e) {
+            run.failure = e;
+            run.status = BackfillResultDto.Status.FAILED;
+            running.set(false);
+            throw e;
+        }
+        return run.toDto();
+    }
+
+    /**
+     * Backfill rates for a date range (inclusive) on the calling thread
+     *
+     * @param from start date
+     * @param to   end date, clamped to the last published date
+     * @return backfill summary
+     */
+    public BackfillResultDto backfill(LocalDate from, LocalDate to) {
+        Run run = begin(from, to);
+        execute(run);
+        if (run.failure != null) {
+            throw run.failure;
+        }
+        return run.toDto();
+    }
+
+    /**
+     * Progress of the running backfill, or the result of the last one
+     *
+     * @return backfill progress
+     */
+    public BackfillResultDto progress() {
+        Run run = lastRun;
+        if (run == null) {
+            throw new ResourceNotFoundException("No rate backfill has been started");
+        }
+        return run.toDto();
+    }
+
+    @PreDestroy
+    void stop() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Validate and clamp the range, claim the single backfill slot and work out which chunks are pending
+     */
+    private Run begin(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+        LocalDate lastPublished = lastPublishedDate();
+        if (from.isAfter(lastPublished)) {
+            throw new IllegalArgumentException("Start date must not be after " + lastPublished
+                    + ", the last date with published rates");
+        }
+        LocalDate end = to.isAfter(lastPublished) ? lastPublished : to;
+        if (!end.equals(to)) {
+            log.info("Clamping backfill end date {} to the last published date {}", to, lastPublished);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("Rate backfill is already running");
+        }
+
+        try {
+            List<DateRange> chunks = splitIntoChunks(from, end);
+            List<RateBackfillCheckpoint> completed = checkpointRepository.findAllOverlapping(from, end);
+            List<DateRange> pending = chunks.stream()
+                    .filter(chunk -> completed.stream().noneMatch(chunk::isCoveredBy))
+                    .collect(Collectors.toList());
+
+            log.info("Backfilling rates from {} to {}: {} chunks, {} already completed",
+                    from, end, chunks.size(), chunks.size() - pending.size());
+
+            Run run = new Run(from, end, chunks.size(), pending);
+            lastRun = run;
+            return run;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    private void execute(Run run) {
+        try {
+            runChunks(run);
+            run.status = BackfillResultDto.Status.COMPLETED;
+        } catch (RuntimeException e) {
+            run.failure = e;
+            run.status = BackfillResultDto.Status.FAILED;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Last date NBP can have published a table for: today after the publication time, yesterday before it
+     */
+    LocalDate lastPublishedDate() {
+        ZonedDateTime now = now();
+        return now.toLocalTime().isBefore(LocalTime.parse(publicationTime))
+                ? now.toLocalDate().minusDays(1)
+                : now.toLocalDate();
+    }
+
+    private ZonedDateTime now() {
+        return ZonedDateTime.now(clock).withZoneSameInstant(publicationZone);
+    }
+
+    private void runChunks(Run run) {
+        List<DateRange> chunks = run.pending;
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, chunks.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (DateRange chunk : chunks) {
+                futures.add(executor.submit(() -> run.record(backfillChunk(chunk))));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            log.error("Backfill chunk failed, completed chunks are kept and will be skipped on resume: {}",
+                    e.getCause().getMessage());
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException("Rate backfill failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Rate backfill interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RateBackfillCheckpoint backfillChunk(DateRange chunk) {
+        List<NbpTableDto> tables;
+        try {
+            tables = nbpClient.fetchRatesBetween(chunk.start(), chunk.end());
+        } catch (ResourceNotFoundException e) {
+            // No tables published in the whole chunk (e.g. holiday period)
+            tables = List.of();
+        }
+
+        List<ExchangeRate> rates = tables.stream()
+                .flatMap(table -> ExchangeRateService.toEntities(table).stream())
+                .collect(Collectors.toList());
+        int tablesCount = tables.size();
+        // Today's table may still be missing (published late or not yet), so such a chunk is not checkpointed
+        boolean complete = chunk.end().isBefore(now().toLocalDate());
+
+        // Rates and checkpoint commit together, so a checkpoint always means the chunk is stored
+        RateBackfillCheckpoint checkpoint = transactionTemplate.execute(status -> {
+            int inserted = exchangeRateRepository.upsertAll(rates);
+            if (inserted > 0) {
+                rateHistoryStore.append(exchangeRateRepository
+                        .findAllByRateDateBetween(chunk.start(), chunk.end()).stream()
+                        .map(ExchangeRateService::mapToDto)
+                        .collect(Collectors.toList()));
+            }
+            RateBackfillCheckpoint result = RateBackfillCheckpoint.builder()
+                    .chunkStart(chunk.start())
+                    .chunkEnd(chunk.end())
+                    .tablesCount(tablesCount)
+                    .ratesCount(inserted)
+                    .build();
+            return complete ? checkpointRepository.save(result) : result;
+        });
+
+        log.debug("Backfilled chunk {} - {}: {} tables", chunk.start(), chunk.end(), tablesCount);
+        return checkpoint;
+    }
+
+    /**
+     * Split a date range into chunks aligned to calendar quarters.
+     * Alignment keeps chunk boundaries stable between runs, so checkpoints can be reused
+     * even when the requested range moves (e.g. "last 5 years" on a later day).
+     */
+    static List<DateRange> splitIntoChunks(LocalDate from, LocalDate to) {
+        List<DateRange> chunks = new ArrayList<>();
+        LocalDate start = from;
+        while (!start.isAfter(to)) {
+            LocalDate quarterEnd = start.with(start.getMonth().firstMonthOfQuarter())
+                    .plusMonths(3)
+                    .withDayOfMonth(1)
+                    .minusDays(1);
+            LocalDate end = quarterEnd.isBefore(to) ? quarterEnd : to;
+            chunks.add(new DateRange(start, end));
+            start = end.plusDays(1);
+        }
+        return chunks;
+    }
+
+    /**
+     * State of one backfill, updated by the chunk workers
+     */
+    private static final class Run {
+
+        private final LocalDate from;
+        private final LocalDate to;
+        private final int chunks;
+        private final List<DateRange> pending;
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger tables = new AtomicInteger();
+        private final AtomicInteger insertedRates = new AtomicInteger();
+        private volatile BackfillResultDto.Status status = BackfillResultDto.Status.RUNNING;
+        private volatile RuntimeException failure;
+
+        private Run(LocalDate from, LocalDate to, int chunks, List<DateRange> pending) {
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+            this.pending = pending;
+        }
+
+        private void record(RateBackfillCheckpoint checkpoint) {
+            tables.addAndGet(checkpoint.getTablesCount());
+            insertedRates.addAndGet(checkpoint.getRatesCount());
+            completedChunks.incrementAndGet();
+        }
+
+        private BackfillResultDto toDto() {
+            int skipped = chunks - pending.size();
+            return BackfillResultDto.builder()
+                    .status(status)
+                    .from(from)
+                    .to(to)
+                    .chunks(chunks)
+                    .skippedChunks(skipped)
+                    .completedChunks(skipped + completedChunks.get())
+                    .tables(tables.get())
+                    .insertedRates(insertedRates.get())
+                    .error(failure != null ? failure.getMessage() : null)
+                    .build();
+        }
+    }
+
+    record DateRange(LocalDate start, LocalDate end) {
+
+        boolean isCoveredBy(RateBackfillCheckpoint checkpoint) {
+            return !checkpoint.getChunkStart().isAfter(start) && !checkpoint.getChunkEnd().isBefore(end);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pl.aeh.currencyexchange.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory rate history, one columnar {@link RateSeries} per currency.
+ * Loaded once at startup and appended to whenever rates are persisted,
+ * so history queries are a binary search plus an array slice.
+ */
+@Component
+@Slf4j
+public class RateHistoryStore {
+
+    private final AtomicReference<Map<String, RateSeries>> series = new AtomicReference<>(Collections.emptyMap());
+    private volatile boolean loaded = false;
+
+    /**
+     * Whether the full history has been loaded and the store can answer queries on its own
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Load the full persisted history
+     *
+     * @param rates all persisted rates
+     */
+    public void load(Collection<ExchangeRateDto> rates) {
+        merge(rates);
+        loaded = true;
+        log.info("Rate history store loaded with {} rates", rates.size());
+    }
+
+    /**
+     * Append rates that have just been persisted.
+     * Inside a transaction the append is deferred until after commit.
+     *
+     * @param rates persisted rates, in any order and for any dates
+     */
+    public void append(Collection<ExchangeRateDto> rates) {
+        if (rates.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> merge(rates));
+    }
+
+    /**
+     * Get rate history for a currency within date range
+     *
+     * @param currency currency code
+     * @param from     start date
+     * @param to       end date
+     * @return rates ordered by date
+     */
+    public List<ExchangeRateDto> find(String currency, LocalDate from, LocalDate to) {
+        RateSeries currencySeries = series.get().get(currency);
+        if (currencySeries == null || from.isAfter(to)) {
+            return Collections.emptyList();
+        }
+        return currencySeries.slice(from, to);
+    }
+
+    private void merge(Collection<ExchangeRateDto> rates) {
+        Map<String, RateSeries> incoming = rates.stream()
+                .collect(Collectors.groupingBy(ExchangeRateDto::getCode))
+                .entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> RateSeries.of(entry.getKey(), entry.getValue())));
+
+        series.updateAndGet(current -> {
+            Map<String, RateSeries> updated = new HashMap<>(current);
+            incoming.forEach((code, newer) -> updated.merge(code, newer, RateSeries::merge));
+            return Collections.unmodifiableMap(updated);
+        });
+    }
+}
@@ -0,0 +1,195 @@
+package pl.aeh.currencyexchange.service;
+
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable columnar time series of one currency's rates.
+ * Rows are sorted by rate date (epoch day); bid and ask are stored as longs
+ * scaled by 10^6, matching the DECIMAL(19, 6) columns.
+ */
+final class RateSeries {
+
+    static final int RATE_SCALE = 6;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final String code;
+    private final String name;
+    private final int[] epochDays;
+    private final long[] bids;
+    private final long[] asks;
+    private final long[] ids;
+    private final long[] createdAtMicros;
+
+    private RateSeries(String code, String name, int[] epochDays, long[] bids, long[] asks,
+                       long[] ids, long[] createdAtMicros) {
+        this.code = code;
+        this.name = name;
+        this.epochDays = epochDays;
+        this.bids = bids;
+        this.asks = asks;
+        this.ids = ids;
+        this.createdAtMicros = createdAtMicros;
+    }
+
+    int size() {
+        return epochDays.length;
+    }
+
+    /**
+     * Build a series from rates of a single currency
+     */
+    static RateSeries of(String code, List<ExchangeRateDto> rates) {
+        List<ExchangeRateDto> sorted = new ArrayList<>(rates);
+        sorted.sort(Comparator.comparing(ExchangeRateDto::getRateDate));
+
+        // Keep only the last rate for a date, later input wins
+        List<ExchangeRateDto> unique = new ArrayList<>(sorted.size());
+        for (ExchangeRateDto rate : sorted) {
+            int last = unique.size() - 1;
+            if (last >= 0 && unique.get(last).getRateDate().equals(rate.getRateDate())) {
+                unique.set(last, rate);
+            } else {
+                unique.add(rate);
+            }
+        }
+
+        int n = unique.size();
+        int[] epochDays = new int[n];
+        long[] bids = new long[n];
+        long[] asks = new long[n];
+        long[] ids = new long[n];
+        long[] createdAtMicros = new long[n];
+        String name = null;
+        for (int i = 0; i < n; i++) {
+            ExchangeRateDto rate = unique.get(i);
+            epochDays[i] = (int) rate.getRateDate().toEpochDay();
+            bids[i] = toScaled(rate.getBid());
+            asks[i] = toScaled(rate.getAsk());
+            ids[i] = rate.getId() != null ? rate.getId() : 0L;
+            createdAtMicros[i] = toMicros(rate.getCreatedAt());
+            if (rate.getCurrency() != null) {
+                name = rate.getCurrency();
+            }
+        }
+        return new RateSeries(code, name, epochDays, bids, asks, ids, createdAtMicros);
+    }
+
+    /**
+     * Merge two series of the same currency; rows of {@code newer} replace rows with the same date
+     */
+    static RateSeries merge(RateSeries older, RateSeries newer) {
+        int capacity = older.size() + newer.size();
+        int[] epochDays = new int[capacity];
+        long[] bids = new long[capacity];
+        long[] asks = new long[capacity];
+        long[] ids = new long[capacity];
+        long[] createdAtMicros = new long[capacity];
+
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < older.size() || j < newer.size()) {
+            RateSeries source;
+            int row;
+            if (j >= newer.size() || (i < older.size() && older.epochDays[i] < newer.epochDays[j])) {
+                source = older;
+                row = i++;
+            } else {
+                if (i < older.size() && older.epochDays[i] == newer.epochDays[j]) {
+                    i++;
+                }
+                source = newer;
+                row = j++;
+            }
+            epochDays[n] = source.epochDays[row];
+            bids[n] = source.bids[row];
+            asks[n] = source.asks[row];
+            ids[n] = source.ids[row];
+            createdAtMicros[n] = source.createdAtMicros[row];
+            n++;
+        }
+
+        return new RateSeries(
+                older.code,
+                newer.name != null ? newer.name : older.name,
+                Arrays.copyOf(epochDays, n),
+                Arrays.copyOf(bids, n),
+                Arrays.copyOf(asks, n),
+                Arrays.copyOf(ids, n),
+                Arrays.copyOf(createdAtMicros, n));
+    }
+
+    /**
+     * Get rates between two dates (inclusive), ordered by date
+     */
+    List<ExchangeRateDto> slice(LocalDate from, LocalDate to) {
+        int start = lowerBound((int) from.toEpochDay());
+        int end = lowerBound((int) to.toEpochDay() + 1);
+        List<ExchangeRateDto> result = new ArrayList<>(Math.max(0, end - start));
+        for (int row = start; row < end; row++) {
+            result.add(toDto(row));
+        }
+        return result;
+    }
+
+    private int lowerBound(int epochDay) {
+        int low = 0;
+        int high = epochDays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private ExchangeRateDto toDto(int row) {
+        // Rates are positive, so HALF_UP of an odd sum halved is (sum + 1) / 2
+        long mid = (bids[row] + asks[row] + 1) / 2;
+        return ExchangeRateDto.builder()
+                .id(ids[row] != 0L ? ids[row] : null)
+                .currency(name)
+                .code(code)
+                .bid(BigDecimal.valueOf(bids[row], RATE_SCALE))
+                .ask(BigDecimal.valueOf(asks[row], RATE_SCALE))
+                .midRate(BigDecimal.valueOf(mid, RATE_SCALE))
+                .rateDate(LocalDate.ofEpochDay(epochDays[row]))
+                .createdAt(fromMicros(createdAtMicros[row]))
+                .build();
+    }
+
+    private static long toScaled(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static long toMicros(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        if (micros == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+                ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,71 @@
+package pl.aeh.currencyexchange.service;
+
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, versioned view of the latest bid/ask for every known currency.
+ * A new instance is built whenever a rate table is persisted; readers never lock.
+ * Rates held by a snapshot are shared and must be treated as read-only.
+ */
+public final class RateSnapshot {
+
+    static final RateSnapshot EMPTY = new RateSnapshot(0L, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, ExchangeRateDto> rates;
+    private final CrossRateMatrix crossRates;
+
+    private RateSnapshot(long version, Map<String, ExchangeRateDto> rates) {
+        this.version = version;
+        this.rates = rates;
+        this.crossRates = rates.isEmpty() ? CrossRateMatrix.EMPTY : CrossRateMatrix.of(rates.values());
+    }
+
+    /**
+     * Get the latest rate for a currency
+     *
+     * @param currency currency code (e.g., "USD")
+     * @return rate or null if the currency is not in the snapshot
+     */
+    public ExchangeRateDto get(String currency) {
+        return rates.get(currency);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Map<String, ExchangeRateDto> getRates() {
+        return rates;
+    }
+
+    /**
+     * Cross rates computed once for this snapshot version
+     */
+    public CrossRateMatrix getCrossRates() {
+        return crossRates;
+    }
+
+    public boolean isEmpty() {
+        return rates.isEmpty();
+    }
+
+    /**
+     * Build the next snapshot version.
+     * A currency is only replaced by a rate with the same or a later rate date,
+     * so persisting a historical table never rolls the snapshot back.
+     */
+    RateSnapshot merge(Collection<ExchangeRateDto> newRates) {
+        Map<String, ExchangeRateDto> merged = new HashMap<>(rates);
+        for (ExchangeRateDto rate : newRates) {
+            merged.merge(rate.getCode(), rate, (current, candidate) ->
+                    candidate.getRateDate().isBefore(current.getRateDate()) ? current : candidate);
+        }
+        return new RateSnapshot(version + 1, Collections.unmodifiableMap(merged));
+    }
+}
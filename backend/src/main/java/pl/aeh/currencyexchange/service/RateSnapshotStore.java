@@ -0,0 +1,47 @@
+package pl.aeh.currencyexchange.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holder of the current {@link RateSnapshot}.
+ * Lookups are a single volatile read; publishing swaps the snapshot atomically.
+ */
+@Component
+@Slf4j
+public class RateSnapshotStore {
+
+    private final AtomicReference<RateSnapshot> current = new AtomicReference<>(RateSnapshot.EMPTY);
+
+    /**
+     * Get the snapshot currently served to readers
+     *
+     * @return current snapshot, empty until the first table is published
+     */
+    public RateSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * Merge persisted rates into a new snapshot version and swap it in.
+     * Inside a transaction the swap is deferred until after commit.
+     *
+     * @param rates rates that have just been persisted
+     */
+    public void publish(Collection<ExchangeRateDto> rates) {
+        if (rates.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> swap(rates));
+    }
+
+    private void swap(Collection<ExchangeRateDto> rates) {
+        RateSnapshot published = current.updateAndGet(snapshot -> snapshot.merge(rates));
+        log.debug("Published rate snapshot version {} with {} currencies",
+                published.getVersion(), published.getRates().size());
+    }
+}
@@ -0,0 +1,119 @@
+package pl.aeh.currencyexchange.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.aeh.currencyexchange.dto.TransactionDto;
+import pl.aeh.currencyexchange.dto.TransactionPageDto;
+import pl.aeh.currencyexchange.repository.TransactionRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Transaction history for large accounts: keyset pages and a streamed NDJSON export.
+ * Neither path materializes the whole history, so memory per request stays constant.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionHistoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+    private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Get one page of the user's history, newest first
+     *
+     * @param email  user's email
+     * @param cursor cursor returned with the previous page, or null for the first page
+     * @param limit  page size (1..{@value #MAX_PAGE_SIZE})
+     * @return page with the cursor of the next one
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageDto getPage(String email, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // One extra row tells whether another page exists
+        Limit fetch = Limit.of(limit + 1);
+        List<TransactionDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = transactionRepository.findPageByUserEmail(email, fetch);
+        } else {
+            Cursor position = Cursor.decode(cursor);
+            rows = transactionRepository.findPageByUserEmailAfter(email, position.createdAt(), position.id(), fetch);
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<TransactionDto> page = hasMore ? rows.subList(0, limit) : rows;
+        TransactionDto last = page.isEmpty() ? null : page.get(page.size() - 1);
+
+        return TransactionPageDto.builder()
+                .items(page)
+                .nextCursor(hasMore ? new Cursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .build();
+    }
+
+    /**
+     * Write the user's whole history as newline-delimited JSON, newest first.
+     * Rows are pulled through a database cursor as DTO projections, so nothing accumulates
+     * in the persistence context.
+     *
+     * @param email user's email
+     * @param out   response body
+     */
+    @Transactional(readOnly = true)
+    public void exportHistory(String email, OutputStream out) {
+        try (Stream<TransactionDto> transactions = transactionRepository.streamAllByUserEmail(email)) {
+            Iterator<TransactionDto> iterator = transactions.iterator();
+            long count = 0;
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                out.write(NEWLINE);
+                count++;
+            }
+            out.flush();
+            log.debug("Exported {} transactions for {}", count, email);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write transaction export", e);
+        }
+    }
+
+    /**
+     * Opaque keyset position: the (createdAt, id) of the last row of a page, Base64URL-encoded
+     */
+    record Cursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
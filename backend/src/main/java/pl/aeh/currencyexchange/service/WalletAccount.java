@@ -0,0 +1,87 @@
+package pl.aeh.currencyexchange.service;
+
+import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * In-memory view of one user's wallets, owned by a single writer lane.
+ * <p>
+ * Wallets are detached copies; changes are tracked until the lane persists them.
+ * Not thread-safe: only the owning lane thread may touch an instance.
+ */
+final class WalletAccount {
+
+    private final Long userId;
+    private final Map<String, Wallet> wallets;
+    private final Set<Wallet> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Transaction> ledger = new ArrayList<>();
+
+    WalletAccount(Long userId, Map<String, Wallet> wallets) {
+        this.userId = userId;
+        this.wallets = wallets;
+    }
+
+    Long getUserId() {
+        return userId;
+    }
+
+    Optional<Wallet> wallet(String currency) {
+        return Optional.ofNullable(wallets.get(currency));
+    }
+
+    /**
+     * Add {@code amount} to the wallet in {@code currency}, opening it when missing.
+     */
+    Wallet credit(String currency, BigDecimal amount) {
+        Wallet wallet = wallets.computeIfAbsent(currency, code -> Wallet.builder()
+                .currency(code)
+                .balance(BigDecimal.ZERO)
+                .build());
+        wallet.setBalance(wallet.getBalance().add(amount));
+        dirty.add(wallet);
+        return wallet;
+    }
+
+    /**
+     * Take {@code amount} from an existing wallet. Callers check the balance first.
+     */
+    Wallet debit(Wallet wallet, BigDecimal amount) {
+        wallet.setBalance(wallet.getBalance().subtract(amount));
+        dirty.add(wallet);
+        return wallet;
+    }
+
+    void record(Transaction transaction) {
+        ledger.add(transaction);
+    }
+
+    boolean hasChanges() {
+        return !dirty.isEmpty() || !ledger.isEmpty();
+    }
+
+    Collection<Wallet> dirtyWallets() {
+        return dirty;
+    }
+
+    List<Transaction> ledger() {
+        return ledger;
+    }
+
+    /**
+     * Forget tracked changes once they are durable.
+     */
+    void markPersisted() {
+        dirty.clear();
+        ledger.clear();
+    }
+}
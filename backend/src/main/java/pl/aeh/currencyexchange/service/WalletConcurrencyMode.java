@@ -0,0 +1,34 @@
+package pl.aeh.currencyexchange.service;
+
+/**
+ * Strategy used to keep concurrent wallet mutations consistent.
+ */
+public enum WalletConcurrencyMode {
+
+    /**
+     * Wallets are read without locks; the {@code version} column detects lost
+     * updates at flush time and the whole operation is retried.
+     */
+    OPTIMISTIC,
+
+    /**
+     * The wallets an operation touches are locked with one {@code SELECT ... FOR UPDATE NOWAIT}
+     * in id order, serializing concurrent operations on the same rows without deadlocks;
+     * an operation that finds a row already locked backs off and is retried.
+     */
+    PESSIMISTIC,
+
+    /**
+     * No entities are loaded: the guarded debit, the credit upsert and the
+     * ledger insert are issued as a single SQL statement.
+     */
+    ATOMIC,
+
+    /**
+     * Every user is pinned to a single writer lane that checks and updates
+     * balances in memory and persists them in batches.
+     *
+     * @see WalletWriterLanes
+     */
+    SINGLE_WRITER
+}
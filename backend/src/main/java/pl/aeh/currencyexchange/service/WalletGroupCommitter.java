@@ -0,0 +1,182 @@
+package pl.aeh.currencyexchange.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.config.SqlStatementCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Group commit for wallet operations.
+ * <p>
+ * Operations from concurrent requests are queued and a committer thread runs up to
+ * {@code max-size} of them, or whatever arrived within {@code max-delay-millis}, in one
+ * shared transaction. Together with pooled transaction IDs and JDBC batching this turns
+ * many small commits (one fsync each) into one. Each caller is released only after the
+ * group containing its operation has committed, so durability is unchanged.
+ * <p>
+ * Balance updates and ledger rows stay in the same transaction: the whole operation is
+ * grouped rather than just the ledger insert, so the ledger can never lag the balances.
+ * If a group fails, its operations are re-run one transaction each, which isolates the
+ * failing one (e.g. insufficient funds or a lost optimistic-lock race).
+ * <p>
+ * SQL statements run by an operation are counted for the request that submitted it, and
+ * those of the shared flush and commit for every request in the group.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletGroupCommitter {
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wallet.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wallet.group-commit.max-size:32}")
+    private int maxSize = 32;
+
+    @Value("${wallet.group-commit.max-delay-millis:5}")
+    private long maxDelayMillis = 5;
+
+    @Value("${wallet.group-commit.committers:2}")
+    private int committers = 2;
+
+    private final BlockingQueue<Operation<?>> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        for (int i = 0; i < committers; i++) {
+            Thread thread = new Thread(this::run, "wallet-group-commit-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Started {} wallet group committers (max {} operations / {} ms)", committers, maxSize, maxDelayMillis);
+    }
+
+    @PreDestroy
+    void stop() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Run {@code work} as part of the next group and wait until that group has committed.
+     *
+     * @param work operation to run inside the shared transaction; must not manage transactions itself
+     * @return the operation's result
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (threads.isEmpty()) {
+            throw new IllegalStateException("Wallet group commit is not running");
+        }
+
+        Operation<T> operation = new Operation<>(work);
+        queue.add(operation);
+        return Futures.await(operation.future);
+    }
+
+    private void run() {
+        List<Operation<?>> group = new ArrayList<>(maxSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                collect(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            commit(group);
+            group.clear();
+        }
+
+        queue.drainTo(group);
+        group.forEach(operation -> operation.future.completeExceptionally(
+                new IllegalStateException("Wallet group commit is shutting down")));
+    }
+
+    /**
+     * Block for the first operation, then keep collecting until the group is full or the delay elapsed.
+     */
+    private void collect(List<Operation<?>> group) throws InterruptedException {
+        group.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        while (group.size() < maxSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Operation<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+    }
+
+    private void commit(List<Operation<?>> group) {
+        if (group.size() == 1) {
+            runAlone(group.get(0));
+            return;
+        }
+
+        try {
+            SqlStatementCounter.shared(group.stream().map(operation -> operation.statements).toList(),
+                    () -> transactionTemplate.executeWithoutResult(status -> group.forEach(Operation::apply)));
+            group.forEach(Operation::complete);
+        } catch (RuntimeException e) {
+            log.debug("Group of {} wallet operations failed ({}), committing them one by one",
+                    group.size(), e.getMessage());
+            group.forEach(this::runAlone);
+        }
+    }
+
+    private void runAlone(Operation<?> operation) {
+        try {
+            SqlStatementCounter.shared(List.of(operation.statements),
+                    () -> transactionTemplate.executeWithoutResult(status -> operation.apply()));
+            operation.complete();
+        } catch (RuntimeException e) {
+            operation.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Operation<T> {
+
+        private final Supplier<T> work;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final SqlStatementCounter.Handle statements = SqlStatementCounter.capture();
+        private T result;
+
+        private Operation(Supplier<T> work) {
+            this.work = work;
+        }
+
+        private void apply() {
+            result = statements.call(work);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+    }
+}
@@ -6,7 +6,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import pl.aeh.currencyexchange.dto.ExchangeRateDto;
 import pl.aeh.currencyexchange.dto.ExchangeRequestDto;
 import pl.aeh.currencyexchange.dto.TransactionDto; 
 import pl.aeh.currencyexchange.dto.WalletDto;
@@ -18,18 +17,24 @@ import pl.aeh.currencyexchange.repository.UserRepository;
 import pl.aeh.currencyexchange.repository.WalletRepository;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WalletService {
 
+    private static final String TOP_UP_DESCRIPTION = "PayPal Top-up (Sandbox Simulation)";
+
     private final UserRepository userRepository;
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
     private final ExchangeRateService exchangeRateService;
+    private final WalletTransactionExecutor walletTransactionExecutor;
+    private final WalletWriterLanes walletWriterLanes;
 
     @Transactional(readOnly = true)
     public List<WalletDto> getUserWallets() {
@@ -40,51 +45,84 @@ public class WalletService {
             throw new InvalidCredentialsException("No authenticated user found");
         }
 
-        String email = authentication.getName();
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + email));
-
-        return walletRepository.findAllByUserIdOrderByCurrencyAsc(user.getId()).stream()
-                .map(this::mapToWalletDto)
-                .collect(Collectors.toList());
+        return walletRepository.findDtosByUserEmail(authentication.getName());
     }
 
-    @Transactional
     public Wallet topUpWallet(String email, BigDecimal amount) {
+        return topUpWallet(email, amount, Function.identity());
+    }
+
+    /**
+     * Top up the user's PLN wallet
+     *
+     * @param respond maps the topped-up wallet to the response; runs inside the wallet transaction,
+     *                so anything it writes commits or rolls back with the balance
+     */
+    public <T> T topUpWallet(String email, BigDecimal amount, Function<Wallet, T> respond) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        User user = userRepository.findByEmail(email)
+        if (walletTransactionExecutor.getMode() == WalletConcurrencyMode.ATOMIC) {
+            return walletTransactionExecutor.execute("topup", () -> respond.apply(walletRepository
+                    .depositAtomically(email, "PLN", amount, TOP_UP_DESCRIPTION)
+                    .orElseThrow(() -> new ResourceNotFoundException("PLN Wallet not found"))));
+        }
+        if (walletTransactionExecutor.getMode() == WalletConcurrencyMode.SINGLE_WRITER) {
+            return walletTransactionExecutor.record("topup",
+                    () -> walletWriterLanes.execute(email, account -> topUpInMemory(account, amount), respond));
+        }
+        return walletTransactionExecutor.execute("topup", () -> respond.apply(doTopUp(email, amount)));
+    }
+
+    private Wallet topUpInMemory(WalletAccount account, BigDecimal amount) {
+        if (account.wallet("PLN").isEmpty()) {
+            throw new ResourceNotFoundException("PLN Wallet not found");
+        }
+
+        Wallet wallet = account.credit("PLN", amount);
+        account.record(depositTransaction(null, amount));
+
+        // The account keeps changing on the lane thread, hand out a copy
+        return Wallet.builder()
+                .id(wallet.getId())
+                .currency(wallet.getCurrency())
+                .balance(wallet.getBalance())
+                .build();
+    }
+
+    private Wallet doTopUp(String email, BigDecimal amount) {
+        lockIfPessimistic(email, List.of("PLN"));
+
+        User user = userRepository.findByEmailWithWallets(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        Wallet wallet = user.getWallets().stream()
-                .filter(w -> "PLN".equals(w.getCurrency()))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("PLN Wallet not found"));
+        Wallet wallet = walletsByCurrency(user).get("PLN");
+        if (wallet == null) {
+            throw new ResourceNotFoundException("PLN Wallet not found");
+        }
 
         wallet.setBalance(wallet.getBalance().add(amount));
         Wallet savedWallet = walletRepository.save(wallet);
 
-        Transaction transaction = Transaction.builder()
-                .user(user)
-                .type(TransactionType.DEPOSIT)
-                .fromCurrency("PLN")
-                .toCurrency("PLN")
-                .fromAmount(amount)
-                .toAmount(amount)
-                .exchangeRate(BigDecimal.ONE)
-                .status(TransactionStatus.COMPLETED)
-                .description("PayPal Top-up (Sandbox Simulation)")
-                .build();
+        Transaction transaction = depositTransaction(user, amount);
 
         transactionRepository.save(transaction);
 
         return savedWallet;
     }
 
-    @Transactional
     public Transaction exchangeCurrency(String email, ExchangeRequestDto request) {
+        return exchangeCurrency(email, request, Function.identity());
+    }
+
+    /**
+     * Exchange between two of the user's wallets at the current rates
+     *
+     * @param respond maps the ledger entry to the response; runs inside the wallet transaction,
+     *                so anything it writes commits or rolls back with the balances
+     */
+    public <T> T exchangeCurrency(String email, ExchangeRequestDto request, Function<Transaction, T> respond) {
         String fromCurr = request.getFromCurrency().toUpperCase();
         String toCurr = request.getToCurrency().toUpperCase();
         BigDecimal amount = request.getAmount();
@@ -96,100 +134,230 @@ public class WalletService {
             throw new IllegalArgumentException("Source and target currency cannot be the same");
         }
 
+        // Price before entering the wallet transaction, so a rate lookup that falls through
+        // to NBP never holds a pooled connection, and never runs on a writer lane
+        Quote quote = quote(fromCurr, toCurr, amount);
+
+        if (walletTransactionExecutor.getMode() == WalletConcurrencyMode.ATOMIC) {
+            return walletTransactionExecutor.execute("exchange",
+                    () -> respond.apply(doAtomicExchange(email, fromCurr, toCurr, amount, quote)));
+        }
+        if (walletTransactionExecutor.getMode() == WalletConcurrencyMode.SINGLE_WRITER) {
+            return walletTransactionExecutor.record("exchange", () -> walletWriterLanes.execute(email,
+                    account -> exchangeInMemory(account, fromCurr, toCurr, amount, quote), respond));
+        }
+        return walletTransactionExecutor.execute("exchange",
+                () -> respond.apply(doExchange(email, fromCurr, toCurr, amount, quote)));
+    }
+
+    private Transaction doAtomicExchange(String email, String fromCurr, String toCurr, BigDecimal amount, Quote quote) {
+        return walletRepository.transferAtomically(email, fromCurr, amount, toCurr, quote.targetAmount(),
+                        quote.rate(), "Exchange " + fromCurr + " to " + toCurr)
+                .orElseThrow(() -> transferFailure(email, fromCurr));
+    }
+
+    /**
+     * Work out why an atomic transfer changed nothing. Only runs on the failure path.
+     */
+    private RuntimeException transferFailure(String email, String fromCurr) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        if (walletRepository.getBalanceByUserIdAndCurrency(user.getId(), fromCurr).isEmpty()) {
+            return new ResourceNotFoundException("Wallet not found: " + fromCurr);
+        }
+        return new IllegalArgumentException("Insufficient funds in " + fromCurr + " wallet");
+    }
 
-        Wallet fromWallet = user.getWallets().stream()
-                .filter(w -> w.getCurrency().equals(fromCurr))
-                .findFirst()
+    private Transaction exchangeInMemory(WalletAccount account, String fromCurr, String toCurr,
+                                         BigDecimal amount, Quote quote) {
+        Wallet fromWallet = account.wallet(fromCurr)
                 .orElseThrow(() -> new ResourceNotFoundException("Wallet not found: " + fromCurr));
 
         if (fromWallet.getBalance().compareTo(amount) < 0) {
             throw new IllegalArgumentException("Insufficient funds in " + fromCurr + " wallet");
         }
 
+        account.debit(fromWallet, amount);
+        account.credit(toCurr, quote.targetAmount());
+
+        Transaction transaction = exchangeTransaction(null, fromCurr, toCurr, amount, quote);
+        account.record(transaction);
+        return transaction;
+    }
+
+    private Transaction doExchange(String email, String fromCurr, String toCurr, BigDecimal amount, Quote quote) {
+        lockIfPessimistic(email, List.of(fromCurr, toCurr));
+
+        User user = userRepository.findByEmailWithWallets(email)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+        Map<String, Wallet> wallets = walletsByCurrency(user);
+        Wallet fromWallet = wallets.get(fromCurr);
+        if (fromWallet == null) {
+            throw new ResourceNotFoundException("Wallet not found: " + fromCurr);
+        }
+        Wallet existingToWallet = wallets.get(toCurr);
+
+        if (fromWallet.getBalance().compareTo(amount) < 0) {
+            throw new IllegalArgumentException("Insufficient funds in " + fromCurr + " wallet");
+        }
+
+        Wallet toWallet = existingToWallet != null ? existingToWallet : walletRepository.save(Wallet.builder()
+                .user(user)
+                .currency(toCurr)
+                .balance(BigDecimal.ZERO)
+                .build());
+
+        fromWallet.setBalance(fromWallet.getBalance().subtract(amount));
+        toWallet.setBalance(toWallet.getBalance().add(quote.targetAmount()));
+
+        walletRepository.save(fromWallet);
+        walletRepository.save(toWallet);
+
+        Transaction transaction = exchangeTransaction(user, fromCurr, toCurr, amount, quote);
+
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * Price an exchange of {@code amount} from {@code fromCurr} to {@code toCurr}
+     * using the current bid/ask quotes.
+     * Priced in {@link FixedPoint} longs from the scaled rates of the cross-rate matrix; amounts or
+     * rates with more decimals than the fixed-point scales, or too large for them, are priced with
+     * BigDecimal from the same matrix instead.
+     * Package-private for the JMH benchmarks.
+     */
+    Quote quote(String fromCurr, String toCurr, BigDecimal amount) {
+        CrossRateMatrix rates = exchangeRateService.getCrossRates(fromCurr, toCurr);
+        Quote quote = FixedPoint.isAmount(amount) ? quoteFixedPoint(rates, fromCurr, toCurr, amount) : null;
+        return quote != null ? quote : quoteExact(rates, fromCurr, toCurr, amount);
+    }
+
+    /**
+     * @return the quote, or null when a rate or product does not fit the fixed-point scales
+     */
+    private static Quote quoteFixedPoint(CrossRateMatrix rates, String fromCurr, String toCurr, BigDecimal amount) {
+        long scaledAmount = FixedPoint.toScaled(amount, FixedPoint.AMOUNT_SCALE);
+
+        if ("PLN".equals(fromCurr)) {
+            int to = rates.ordinal(toCurr);
+            if (!rates.hasScaledAsk(to) || !FixedPoint.fitsProduct(scaledAmount, FixedPoint.RATE_ONE)) {
+                return null;
+            }
+            long targetAmount = FixedPoint.divideByRate(scaledAmount, rates.scaledAsk(to));
+            return new Quote(rates.ask(to), FixedPoint.toAmount(targetAmount));
+        }
+        if ("PLN".equals(toCurr)) {
+            int from = rates.ordinal(fromCurr);
+            if (!rates.hasScaledBid(from) || !FixedPoint.fitsProduct(scaledAmount, rates.scaledBid(from))) {
+                return null;
+            }
+            long targetAmount = FixedPoint.multiplyByRate(scaledAmount, rates.scaledBid(from));
+            return new Quote(rates.bid(from), FixedPoint.toAmount(targetAmount));
+        }
+
+        int from = rates.ordinal(fromCurr);
+        int to = rates.ordinal(toCurr);
+        if (!rates.hasScaledBid(from) || !rates.hasScaledAsk(to)
+                || !FixedPoint.fitsProduct(scaledAmount, rates.scaledBid(from))) {
+            return null;
+        }
+        long targetAmount = FixedPoint.crossConvert(scaledAmount, rates.scaledBid(from), rates.scaledAsk(to));
+        if (!FixedPoint.fitsProduct(targetAmount, FixedPoint.RATE_ONE)) {
+            return null;
+        }
+        long rate = FixedPoint.effectiveRate(targetAmount, scaledAmount);
+        return new Quote(FixedPoint.toRate(rate), FixedPoint.toAmount(targetAmount));
+    }
+
+    /**
+     * BigDecimal pricing, the reference for {@link #quoteFixedPoint}.
+     * Package-private for the JMH benchmarks.
+     */
+    Quote quoteExact(String fromCurr, String toCurr, BigDecimal amount) {
+        return quoteExact(exchangeRateService.getCrossRates(fromCurr, toCurr), fromCurr, toCurr, amount);
+    }
+
+    private static Quote quoteExact(CrossRateMatrix rates, String fromCurr, String toCurr, BigDecimal amount) {
         BigDecimal rate;
         BigDecimal targetAmount;
 
         if ("PLN".equals(fromCurr)) {
-            ExchangeRateDto rateDto = exchangeRateService.getCurrentRate(toCurr);
-            rate = rateDto.getAsk(); 
+            rate = rates.ask(rates.ordinal(toCurr));
             targetAmount = amount.divide(rate, 4, java.math.RoundingMode.HALF_UP);
         }
         else if ("PLN".equals(toCurr)) {
-            ExchangeRateDto rateDto = exchangeRateService.getCurrentRate(fromCurr);
-            rate = rateDto.getBid(); 
+            rate = rates.bid(rates.ordinal(fromCurr));
             targetAmount = amount.multiply(rate).setScale(4, java.math.RoundingMode.HALF_UP);
         }
         else {
-            ExchangeRateDto fromRateDto = exchangeRateService.getCurrentRate(fromCurr);
-            BigDecimal plnAmount = amount.multiply(fromRateDto.getBid());
-            
-            ExchangeRateDto toRateDto = exchangeRateService.getCurrentRate(toCurr);
-            BigDecimal finalRate = toRateDto.getAsk();
+            BigDecimal plnAmount = amount.multiply(rates.bid(rates.ordinal(fromCurr)));
+            BigDecimal finalRate = rates.ask(rates.ordinal(toCurr));
             
             targetAmount = plnAmount.divide(finalRate, 4, java.math.RoundingMode.HALF_UP);
             
             rate = targetAmount.divide(amount, 6, java.math.RoundingMode.HALF_UP);
         }
 
-        Wallet toWallet = user.getWallets().stream()
-                .filter(w -> w.getCurrency().equals(toCurr))
-                .findFirst()
-                .orElseGet(() -> {
-                    Wallet newWallet = new Wallet();
-                    newWallet.setUser(user);
-                    newWallet.setCurrency(toCurr);
-                    newWallet.setBalance(BigDecimal.ZERO);
-                    return walletRepository.save(newWallet);
-                });
-
-        fromWallet.setBalance(fromWallet.getBalance().subtract(amount));
-        toWallet.setBalance(toWallet.getBalance().add(targetAmount));
+        return new Quote(rate, targetAmount);
+    }
 
-        walletRepository.save(fromWallet);
-        walletRepository.save(toWallet);
+    private Transaction depositTransaction(User user, BigDecimal amount) {
+        return Transaction.builder()
+                .user(user)
+                .type(TransactionType.DEPOSIT)
+                .fromCurrency("PLN")
+                .toCurrency("PLN")
+                .fromAmount(amount)
+                .toAmount(amount)
+                .exchangeRate(BigDecimal.ONE)
+                .status(TransactionStatus.COMPLETED)
+                .description(TOP_UP_DESCRIPTION)
+                .build();
+    }
 
-        Transaction transaction = Transaction.builder()
+    private Transaction exchangeTransaction(User user, String fromCurr, String toCurr, BigDecimal amount, Quote quote) {
+        return Transaction.builder()
                 .user(user)
                 .type(TransactionType.BUY)
                 .fromCurrency(fromCurr)
                 .toCurrency(toCurr)
                 .fromAmount(amount)
-                .toAmount(targetAmount)
-                .exchangeRate(rate)
+                .toAmount(quote.targetAmount())
+                .exchangeRate(quote.rate())
                 .status(TransactionStatus.COMPLETED)
                 .description("Exchange " + fromCurr + " to " + toCurr)
                 .build();
+    }
 
-        return transactionRepository.save(transaction);
+    record Quote(BigDecimal rate, BigDecimal targetAmount) {
+    }
+
+    /**
+     * Index the wallets of a user loaded with {@link UserRepository#findByEmailWithWallets} by currency code
+     */
+    private static Map<String, Wallet> walletsByCurrency(User user) {
+        Map<String, Wallet> wallets = new HashMap<>();
+        for (Wallet wallet : user.getWallets()) {
+            wallets.put(wallet.getCurrency(), wallet);
+        }
+        return wallets;
+    }
+
+    /**
+     * In pessimistic mode, lock exactly the wallets a mutation touches, in one statement and in id order.
+     * Runs before the wallets are loaded so the fetch join reuses the locked, up-to-date instances.
+     * A wallet locked by a concurrent mutation fails the attempt at once and the executor retries it.
+     * Optimistic mode relies on the wallet version check at commit instead.
+     */
+    private void lockIfPessimistic(String email, List<String> currencies) {
+        if (walletTransactionExecutor.getMode() == WalletConcurrencyMode.PESSIMISTIC) {
+            walletRepository.lockByUserEmailAndCurrencies(email, currencies);
+        }
     }
 
     @Transactional(readOnly = true)
     public List<TransactionDto> getTransactionHistory(String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        return transactionRepository.findAllByUserIdOrderByCreatedAtDesc(user.getId()).stream()
-                .map(t -> TransactionDto.builder()
-                        .id(t.getId())
-                        .fromCurrency(t.getFromCurrency())
-                        .toCurrency(t.getToCurrency())
-                        .fromAmount(t.getFromAmount())
-                        .toAmount(t.getToAmount())
-                        .exchangeRate(t.getExchangeRate())
-                        .status(t.getStatus().name())
-                        .createdAt(t.getCreatedAt())
-                        .type(t.getType().name()) 
-                        .build())
-                .collect(Collectors.toList());
-    }
-
-    private WalletDto mapToWalletDto(Wallet wallet) {
-        return WalletDto.builder()
-                .id(wallet.getId())
-                .currency(wallet.getCurrency())
-                .balance(wallet.getBalance())
-                .build();
+        return transactionRepository.findDtosByUserEmail(email);
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package pl.aeh.currencyexchange.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.exception.ConflictException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs wallet mutations in their own transaction (or a shared one when
+ * {@link WalletGroupCommitter group commit} is enabled) and re-runs them when a
+ * concurrent update bumped a wallet version first (optimistic mode) or held a wallet
+ * row lock that could not be taken without waiting (pessimistic mode).
+ * <p>
+ * Every attempt is recorded under {@code wallet.operations} (tagged with
+ * operation, mode and outcome) and timed under {@code wallet.operation.duration},
+ * so both modes can be compared on throughput and conflict rate.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletTransactionExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final WalletGroupCommitter walletGroupCommitter;
+
+    @Value("${wallet.concurrency.mode:optimistic}")
+    private WalletConcurrencyMode mode = WalletConcurrencyMode.OPTIMISTIC;
+
+    @Value("${wallet.concurrency.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${wallet.concurrency.backoff-millis:10}")
+    private long backoffMillis = 10;
+
+    public WalletConcurrencyMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Execute {@code work} in a new transaction, retrying on optimistic lock
+     * failures and unavailable row locks up to {@code wallet.concurrency.max-attempts} times.
+     *
+     * @throws ConflictException when every attempt lost the race
+     */
+    public <T> T execute(String operation, Supplier<T> work) {
+        return timed(operation, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = inTransaction(work);
+                    count(operation, "committed");
+                    return result;
+                } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                    retryOrGiveUp(operation, attempt, "conflict");
+                } catch (PessimisticLockingFailureException | PessimisticLockException | LockTimeoutException e) {
+                    retryOrGiveUp(operation, attempt, "lock_unavailable");
+                } catch (RuntimeException e) {
+                    count(operation, "failed");
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Record {@code work} under the same metrics without opening a transaction,
+     * for modes that manage persistence themselves.
+     */
+    public <T> T record(String operation, Supplier<T> work) {
+        return timed(operation, () -> {
+            try {
+                T result = work.get();
+                count(operation, "committed");
+                return result;
+            } catch (RuntimeException e) {
+                count(operation, "failed");
+                throw e;
+            }
+        });
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        if (walletGroupCommitter.isEnabled()) {
+            return walletGroupCommitter.execute(work);
+        }
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    private <T> T timed(String operation, Supplier<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return work.get();
+        } finally {
+            sample.stop(Timer.builder("wallet.operation.duration")
+                    .tag("operation", operation)
+                    .tag("mode", mode.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    private void count(String operation, String outcome) {
+        Counter.builder("wallet.operations")
+                .tag("operation", operation)
+                .tag("mode", mode.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Record a lost race and back off before the next attempt
+     *
+     * @throws ConflictException when this was the last attempt
+     */
+    private void retryOrGiveUp(String operation, int attempt, String outcome) {
+        count(operation, outcome);
+        if (attempt >= maxAttempts) {
+            log.warn("Giving up on {} after {} conflicting attempts", operation, attempt);
+            throw new ConflictException("Wallet was modified concurrently, please retry");
+        }
+        log.debug("Concurrent update ({}) on {} (attempt {}), retrying", outcome, operation, attempt);
+        backOff(attempt);
+    }
+
+    private void backOff(int attempt) {
+        long delay = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while retrying wallet operation");
+        }
+    }
+}
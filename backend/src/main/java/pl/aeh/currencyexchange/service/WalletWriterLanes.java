@@ -0,0 +1,331 @@
+package pl.aeh.currencyexchange.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.config.SqlStatementCounter;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.Wallet;
+import pl.aeh.currencyexchange.repository.TransactionRepository;
+import pl.aeh.currencyexchange.repository.UserRepository;
+import pl.aeh.currencyexchange.repository.WalletRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Single-writer execution for wallet mutations.
+ * <p>
+ * Every user is pinned to one of a fixed number of lanes (hash of the user's email,
+ * which identifies the user as uniquely as its ID without a lookup). A lane is a single
+ * thread that owns the in-memory {@link WalletAccount} of its users, so balances are
+ * checked and updated without locks. Commands are drained in batches; the changes of a
+ * batch are persisted in one transaction and callers are only released once it commits.
+ * If persisting fails, every command of the batch fails and the touched accounts are
+ * evicted so they are reloaded from the database. A command whose response step fails
+ * (an idempotency key taken by another instance, say) fails alone: the batch rolls back and
+ * the other commands are applied once more to reloaded accounts without it.
+ * <p>
+ * Balances are written with a version check, so a wallet changed outside the lane (another
+ * node, another concurrency mode, a manual fix) is never overwritten: the batch rolls back,
+ * its accounts are reloaded and its commands are applied once more to the fresh balances.
+ * <p>
+ * SQL statements loading an account are counted for the request whose command needed it,
+ * and those persisting a batch for every request in the batch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletWriterLanes {
+
+    private final UserRepository userRepository;
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletTransactionExecutor walletTransactionExecutor;
+
+    @Value("${wallet.single-writer.lanes:0}")
+    private int laneCount;
+
+    @Value("${wallet.single-writer.max-batch:64}")
+    private int maxBatch = 64;
+
+    @Value("${wallet.single-writer.max-accounts-per-lane:10000}")
+    private int maxAccountsPerLane = 10_000;
+
+    private Lane[] lanes;
+
+    @PostConstruct
+    void start() {
+        if (walletTransactionExecutor.getMode() != WalletConcurrencyMode.SINGLE_WRITER) {
+            return;
+        }
+
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        Lane[] started = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            started[i] = new Lane("wallet-writer-" + i);
+        }
+        lanes = started;
+        log.info("Started {} single-writer wallet lanes", count);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (lanes != null) {
+            for (Lane lane : lanes) {
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Run {@code action} on the lane owning {@code email} and wait until its changes are durable.
+     * <p>
+     * Actions must validate before they mutate the account: an exception thrown by an action
+     * fails only that command, so it must leave the account untouched.
+     *
+     * @param email  owner of the wallets
+     * @param action mutation applied to the user's in-memory account
+     * @return the action's result, once the batch containing it has committed
+     */
+    public <T> T execute(String email, Function<WalletAccount, T> action) {
+        return execute(email, action, Function.identity());
+    }
+
+    /**
+     * Run {@code action} on the lane owning {@code email}, then map its result with {@code respond}
+     * inside the transaction persisting it, and wait until that transaction commits.
+     *
+     * @param respond runs after the batch is written (ledger IDs assigned); an exception fails only this command
+     * @return the mapped result, once the batch containing it has committed
+     */
+    public <T, R> R execute(String email, Function<WalletAccount, T> action, Function<T, R> respond) {
+        if (lanes == null) {
+            throw new IllegalStateException("Single-writer wallet lanes are not running");
+        }
+
+        Command<T, R> command = new Command<>(email, action, respond);
+        lanes[Math.floorMod(email.hashCode(), lanes.length)].queue.add(command);
+
+        return Futures.await(command.future);
+    }
+
+    private WalletAccount load(String email) {
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+            Map<String, Wallet> wallets = new HashMap<>();
+            for (Wallet wallet : walletRepository.findAllByUserId(user.getId())) {
+                wallets.put(wallet.getCurrency(), Wallet.builder()
+                        .id(wallet.getId())
+                        .currency(wallet.getCurrency())
+                        .balance(wallet.getBalance())
+                        .version(wallet.getVersion())
+                        .build());
+            }
+            return new WalletAccount(user.getId(), wallets);
+        });
+    }
+
+    private void persist(WalletAccount account) {
+        walletRepository.writeBalances(account.getUserId(), account.dirtyWallets());
+
+        if (!account.ledger().isEmpty()) {
+            User user = userRepository.getReferenceById(account.getUserId());
+            account.ledger().forEach(transaction -> transaction.setUser(user));
+            transactionRepository.saveAll(account.ledger());
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final BlockingQueue<Command<?, ?>> queue = new LinkedBlockingQueue<>();
+        private final Map<String, WalletAccount> accounts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WalletAccount> eldest) {
+                return size() > maxAccountsPerLane;
+            }
+        };
+        private final Thread thread;
+
+        private Lane(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            List<Command<?, ?>> batch = new ArrayList<>(maxBatch);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                queue.drainTo(batch, maxBatch - 1);
+                process(batch, true);
+                batch.clear();
+            }
+
+            Command<?, ?> pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future.completeExceptionally(new IllegalStateException("Wallet writer is shutting down"));
+            }
+        }
+
+        /**
+         * Apply and persist a batch of commands
+         *
+         * @param retryOnConflict whether to reload the accounts and apply the commands once more
+         *                        when a wallet was changed outside the lane
+         */
+        private void process(List<Command<?, ?>> batch, boolean retryOnConflict) {
+            List<Command<?, ?>> applied = new ArrayList<>(batch.size());
+            Map<String, WalletAccount> touched = new LinkedHashMap<>();
+
+            for (Command<?, ?> command : batch) {
+                try {
+                    WalletAccount account = command.statements.call(() -> account(command.email));
+                    command.apply(account);
+                    touched.put(command.email, account);
+                    applied.add(command);
+                } catch (RuntimeException e) {
+                    command.future.completeExceptionally(e);
+                }
+            }
+
+            if (applied.isEmpty()) {
+                return;
+            }
+
+            List<Command<?, ?>> failed = new ArrayList<>(1);
+            try {
+                SqlStatementCounter.shared(applied.stream().map(command -> command.statements).toList(),
+                        () -> transactionTemplate.executeWithoutResult(status -> {
+                            touched.values().stream()
+                                    .filter(WalletAccount::hasChanges)
+                                    .forEach(WalletWriterLanes.this::persist);
+                            Command<?, ?> failure = respond(applied, status);
+                            if (failure != null) {
+                                failed.add(failure);
+                            }
+                        }));
+                if (!failed.isEmpty()) {
+                    reapplyWithout(applied, failed.get(0), touched, retryOnConflict);
+                    return;
+                }
+                touched.values().forEach(WalletAccount::markPersisted);
+                applied.forEach(Command::complete);
+            } catch (OptimisticLockingFailureException e) {
+                touched.keySet().forEach(accounts::remove);
+                if (retryOnConflict) {
+                    log.info("Wallets changed outside {}, reapplying {} commands to reloaded accounts: {}",
+                            thread.getName(), applied.size(), e.getMessage());
+                    process(applied, false);
+                } else {
+                    log.warn("Wallets changed outside {} again, failing {} commands", thread.getName(), applied.size());
+                    applied.forEach(command -> command.future.completeExceptionally(
+                            new ConflictException("Wallet was modified concurrently, please retry")));
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to persist wallet batch of {} commands on {}", applied.size(), thread.getName(), e);
+                touched.keySet().forEach(accounts::remove);
+                applied.forEach(command -> command.future.completeExceptionally(e));
+            }
+        }
+
+        /**
+         * Run the response step of every command, stopping at the first that fails: it may have
+         * aborted the transaction, so the batch is rolled back and that command returned
+         *
+         * @return the command whose response step failed, or null when all succeeded
+         */
+        private Command<?, ?> respond(List<Command<?, ?>> applied, TransactionStatus status) {
+            for (Command<?, ?> command : applied) {
+                try {
+                    command.respond();
+                } catch (RuntimeException e) {
+                    command.failure = e;
+                    status.setRollbackOnly();
+                    return command;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Fail the command whose response step failed and apply the rest of the rolled back batch
+         * once more, to accounts reloaded without its changes
+         */
+        private void reapplyWithout(List<Command<?, ?>> applied, Command<?, ?> failed,
+                                    Map<String, WalletAccount> touched, boolean retryOnConflict) {
+            touched.keySet().forEach(accounts::remove);
+            failed.future.completeExceptionally(failed.failure);
+
+            List<Command<?, ?>> remaining = applied.stream().filter(command -> command != failed).toList();
+            if (!remaining.isEmpty()) {
+                log.info("Response of a command failed on {}, reapplying the other {} of its batch",
+                        thread.getName(), remaining.size());
+                process(remaining, retryOnConflict);
+            }
+        }
+
+        private WalletAccount account(String email) {
+            WalletAccount account = accounts.get(email);
+            if (account == null) {
+                account = load(email);
+                accounts.put(email, account);
+            }
+            return account;
+        }
+    }
+
+    private static final class Command<T, R> {
+
+        private final String email;
+        private final Function<WalletAccount, T> action;
+        private final Function<T, R> respond;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+        private final SqlStatementCounter.Handle statements = SqlStatementCounter.capture();
+        private T result;
+        private R response;
+        private RuntimeException failure;
+
+        private Command(String email, Function<WalletAccount, T> action, Function<T, R> respond) {
+            this.email = email;
+            this.action = action;
+            this.respond = respond;
+        }
+
+        private void apply(WalletAccount account) {
+            result = statements.call(() -> action.apply(account));
+        }
+
+        private void respond() {
+            response = statements.call(() -> respond.apply(result));
+        }
+
+        private void complete() {
+            future.complete(response);
+        }
+    }
+}
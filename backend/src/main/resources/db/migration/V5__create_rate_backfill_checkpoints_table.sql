@@ -0,0 +1,11 @@
+CREATE TABLE rate_backfill_checkpoints (
+    id BIGSERIAL PRIMARY KEY,
+    chunk_start DATE NOT NULL,
+    chunk_end DATE NOT NULL,
+    tables_count INTEGER NOT NULL DEFAULT 0,
+    rates_count INTEGER NOT NULL DEFAULT 0,
+    completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_backfill_chunk UNIQUE (chunk_start, chunk_end)
+);
+
+CREATE INDEX idx_backfill_chunk_start ON rate_backfill_checkpoints(chunk_start);
@@ -0,0 +1,2 @@
+-- Supports keyset pagination of a user's history ordered by (created_at, id) descending
+CREATE INDEX idx_transactions_user_created_id ON transactions(user_id, created_at DESC, id DESC);
@@ -0,0 +1,4 @@
+-- H2 backs BIGSERIAL with an internal identity sequence, so the pooled one is created explicitly
+-- and the identity dropped: like on PostgreSQL, every ID comes from the pooled allocator
+CREATE SEQUENCE transactions_id_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE transactions ALTER COLUMN id DROP IDENTITY;
@@ -0,0 +1,5 @@
+-- Hibernate allocates transaction IDs in blocks of 50 (pooled optimizer), also for the
+-- ledger rows inserted with plain SQL, so the column loses its nextval default: an insert
+-- without an ID would take a whole block of 50
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
+ALTER TABLE transactions ALTER COLUMN id DROP DEFAULT;
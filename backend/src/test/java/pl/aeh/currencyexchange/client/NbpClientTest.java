@@ -1,62 +1,79 @@
 package pl.aeh.currencyexchange.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
-import pl.aeh.currencyexchange.dto.nbp.NbpRateDto;
+import org.springframework.test.util.ReflectionTestUtils;
 import pl.aeh.currencyexchange.dto.nbp.NbpTableDto;
 import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
 
-@ExtendWith(MockitoExtension.class)
+/**
+ * Drives the client against a local HTTP server standing in for the NBP API
+ */
 class NbpClientTest {
 
-    @Mock
-    private RestTemplate restTemplate;
+    private static final String TABLE_JSON = """
+            {"table":"C","no":"001/C/NBP/2024","tradingDate":"2024-01-02","effectiveDate":"2024-01-03",
+             "rates":[{"currency":"dolar amerykański","code":"USD","bid":4.0000,"ask":4.1000}]}""";
 
-    @InjectMocks
-    private NbpClient nbpClient;
+    private static final String PREVIOUS_TABLE_JSON = """
+            {"table":"C","no":"250/C/NBP/2023","effectiveDate":"2024-01-02","rates":[]}""";
 
-    private NbpTableDto nbpTableDto;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private NbpClient nbpClient;
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicInteger requests = new AtomicInteger();
 
     @BeforeEach
-    void setUp() {
-        NbpRateDto rate = new NbpRateDto();
-        rate.setCurrency("dolar amerykański");
-        rate.setCode("USD");
-        rate.setBid(new BigDecimal("4.0000"));
-        rate.setAsk(new BigDecimal("4.1000"));
-
-        nbpTableDto = new NbpTableDto();
-        nbpTableDto.setTable("C");
-        nbpTableDto.setNo("001/C/NBP/2024");
-        nbpTableDto.setTradingDate(LocalDate.now());
-        nbpTableDto.setEffectiveDate(LocalDate.now());
-        nbpTableDto.setRates(Collections.singletonList(rate));
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        nbpClient = new NbpClient(HttpClient.newHttpClient(), new ObjectMapper().findAndRegisterModules(), meterRegistry);
+        ReflectionTestUtils.setField(nbpClient, "nbpApiBaseUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/api/exchangerates/tables/C");
+        ReflectionTestUtils.setField(nbpClient, "initialBackoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(nbpClient, "hedgeDelay", Duration.ZERO);
+        ReflectionTestUtils.setField(nbpClient, "requestTimeout", Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
     }
 
     @Test
     @DisplayName("Should fetch current rates successfully")
     void shouldFetchCurrentRatesSuccessfully() {
         // Given
-        NbpTableDto[] responseArray = new NbpTableDto[]{nbpTableDto};
-        when(restTemplate.getForObject(anyString(), eq(NbpTableDto[].class))).thenReturn(responseArray);
+        respond(exchange -> reply(exchange, 200, "[" + TABLE_JSON + "]"));
+        nbpClient.init();
 
         // When
         NbpTableDto result = nbpClient.fetchCurrentRates();
@@ -64,6 +81,7 @@ class NbpClientTest {
         // Then
         assertThat(result).isNotNull();
         assertThat(result.getTable()).isEqualTo("C");
+        assertThat(result.getEffectiveDate()).isEqualTo(LocalDate.of(2024, 1, 3));
         assertThat(result.getRates()).hasSize(1);
         assertThat(result.getRates().get(0).getCode()).isEqualTo("USD");
     }
@@ -72,26 +90,184 @@ class NbpClientTest {
     @DisplayName("Should throw ResourceNotFoundException when NBP returns 404")
     void shouldThrowExceptionWhenNbpReturns404() {
         // Given
-        when(restTemplate.getForObject(anyString(), eq(NbpTableDto[].class)))
-                .thenThrow(org.springframework.web.client.HttpClientErrorException.create(
-                        org.springframework.http.HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+        respond(exchange -> reply(exchange, 404, "404 NotFound - Not Found - Brak danych"));
+        nbpClient.init();
 
         // When/Then
         assertThatThrownBy(() -> nbpClient.fetchCurrentRates())
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessageContaining("not found");
+        assertThat(requests).hasValue(1);
     }
 
     @Test
     @DisplayName("Should throw RuntimeException on network error")
     void shouldThrowExceptionOnNetworkError() {
         // Given
-        when(restTemplate.getForObject(anyString(), eq(NbpTableDto[].class)))
-                .thenThrow(new ResourceAccessException("Connection refused"));
+        server.stop(0);
+        nbpClient.init();
 
         // When/Then
         assertThatThrownBy(() -> nbpClient.fetchCurrentRates())
                 .isInstanceOf(RuntimeException.class)
                 .hasMessageContaining("Could not connect to NBP API");
     }
+
+    @Test
+    @DisplayName("Should fetch all tables for a date range")
+    void shouldFetchRatesBetweenDates() {
+        // Given
+        AtomicReference<String> requestedPath = new AtomicReference<>();
+        respond(exchange -> {
+            requestedPath.set(exchange.getRequestURI().getPath());
+            reply(exchange, 200, "[" + PREVIOUS_TABLE_JSON + "," + TABLE_JSON + "]");
+        });
+        nbpClient.init();
+
+        // When
+        List<NbpTableDto> result = nbpClient.fetchRatesBetween(LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 3));
+
+        // Then
+        assertThat(result).hasSize(2);
+        assertThat(result.get(1).getNo()).isEqualTo("001/C/NBP/2024");
+        assertThat(requestedPath.get()).endsWith("/2024-01-02/2024-01-03");
+    }
+
+    @Test
+    @DisplayName("Should retry server errors with backoff until NBP answers")
+    void shouldRetryServerErrors() {
+        // Given
+        respond(exchange -> {
+            if (requests.get() < 3) {
+                reply(exchange, 503, "Service Unavailable");
+            } else {
+                reply(exchange, 200, "[" + TABLE_JSON + "]");
+            }
+        });
+        nbpClient.init();
+
+        // When
+        NbpTableDto result = nbpClient.fetchCurrentRates();
+
+        // Then
+        assertThat(result.getNo()).isEqualTo("001/C/NBP/2024");
+        assertThat(requests).hasValue(3);
+        assertThat(meterRegistry.counter("nbp.retries").count()).isEqualTo(2);
+        assertThat(meterRegistry.get("nbp.request").tag("outcome", "server_error").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("nbp.fetch").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should give up after the configured number of attempts")
+    void shouldGiveUpAfterMaxAttempts() {
+        // Given
+        respond(exchange -> reply(exchange, 500, "Internal Server Error"));
+        nbpClient.init();
+
+        // When/Then
+        assertThatThrownBy(() -> nbpClient.fetchCurrentRates())
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Failed to fetch rates from NBP");
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Should open the circuit after consecutive failures and fail fast")
+    void shouldOpenCircuitAfterConsecutiveFailures() {
+        // Given
+        respond(exchange -> reply(exchange, 503, "Service Unavailable"));
+        ReflectionTestUtils.setField(nbpClient, "failureThreshold", 2);
+        ReflectionTestUtils.setField(nbpClient, "maxAttempts", 1);
+        nbpClient.init();
+
+        assertThatThrownBy(() -> nbpClient.fetchCurrentRates()).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> nbpClient.fetchCurrentRates()).isInstanceOf(RuntimeException.class);
+
+        // When/Then
+        assertThatThrownBy(() -> nbpClient.fetchCurrentRates())
+                .isInstanceOf(NbpClient.CircuitOpenException.class);
+        assertThat(requests).hasValue(2);
+        assertThat(meterRegistry.counter("nbp.circuit.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should close the circuit again after a successful trial request")
+    void shouldCloseCircuitAfterSuccessfulTrial() {
+        // Given
+        respond(exchange -> {
+            if (requests.get() == 1) {
+                reply(exchange, 503, "Service Unavailable");
+            } else {
+                reply(exchange, 200, "[" + TABLE_JSON + "]");
+            }
+        });
+        ReflectionTestUtils.setField(nbpClient, "failureThreshold", 1);
+        ReflectionTestUtils.setField(nbpClient, "maxAttempts", 1);
+        ReflectionTestUtils.setField(nbpClient, "openDuration", Duration.ZERO);
+        nbpClient.init();
+        assertThatThrownBy(() -> nbpClient.fetchCurrentRates()).isInstanceOf(RuntimeException.class);
+
+        // When
+        NbpTableDto result = nbpClient.fetchCurrentRates();
+
+        // Then
+        assertThat(result.getNo()).isEqualTo("001/C/NBP/2024");
+        assertThat(nbpClient.fetchCurrentRates()).isNotNull();
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("Should hedge a slow request and return the faster response")
+    void shouldHedgeSlowRequest() {
+        // Given
+        respond(exchange -> {
+            if (requests.get() == 1) {
+                sleep(Duration.ofSeconds(1));
+                reply(exchange, 200, "[" + PREVIOUS_TABLE_JSON + "]");
+            } else {
+                reply(exchange, 200, "[" + TABLE_JSON + "]");
+            }
+        });
+        ReflectionTestUtils.setField(nbpClient, "hedgeDelay", Duration.ofMillis(50));
+        nbpClient.init();
+
+        // When
+        long start = System.nanoTime();
+        NbpTableDto result = nbpClient.fetchCurrentRates();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Then
+        assertThat(result.getNo()).isEqualTo("001/C/NBP/2024");
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(1));
+        assertThat(requests).hasValue(2);
+    }
+
+    private void respond(Handler handler) {
+        server.createContext("/api/exchangerates/tables/C", exchange -> {
+            requests.incrementAndGet();
+            handler.handle(exchange);
+        });
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
 }
@@ -0,0 +1,119 @@
+package pl.aeh.currencyexchange.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CountingDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private Statement statement;
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(target.getConnection()).thenReturn(connection);
+        dataSource = new CountingDataSource(target);
+        SqlStatementCounter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SqlStatementCounter.stop();
+    }
+
+    @Test
+    @DisplayName("Should count every execution, with a batch counting once")
+    void shouldCountExecutions() throws Exception {
+        // Given
+        when(connection.prepareStatement("update wallets set balance = ?")).thenReturn(preparedStatement);
+        when(connection.createStatement()).thenReturn(statement);
+
+        // When
+        try (Connection counted = dataSource.getConnection()) {
+            PreparedStatement update = counted.prepareStatement("update wallets set balance = ?");
+            update.setInt(1, 1);
+            update.addBatch();
+            update.setInt(1, 2);
+            update.addBatch();
+            update.executeBatch();
+            update.executeUpdate();
+            counted.createStatement().execute("select 1");
+        }
+
+        // Then
+        assertThat(SqlStatementCounter.current()).isEqualTo(3);
+        verify(preparedStatement).executeBatch();
+        verify(connection).close();
+    }
+
+    @Test
+    @DisplayName("Should count statements run on another thread for the captured request")
+    void shouldCountCapturedWorkOnAnotherThread() throws Exception {
+        // Given
+        when(connection.createStatement()).thenReturn(statement);
+        SqlStatementCounter.Handle handle = SqlStatementCounter.capture();
+
+        // When
+        CompletableFuture.runAsync(() -> handle.call(() -> execute("select 1"))).join();
+
+        // Then
+        assertThat(SqlStatementCounter.current()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should count shared work for every participating request")
+    void shouldCountSharedWorkForEveryRequest() throws Exception {
+        // Given
+        when(connection.createStatement()).thenReturn(statement);
+        SqlStatementCounter.Handle first = SqlStatementCounter.capture();
+        SqlStatementCounter.Handle second = CompletableFuture.supplyAsync(() -> {
+            SqlStatementCounter.start();
+            return SqlStatementCounter.capture();
+        }).join();
+
+        // When
+        SqlStatementCounter.shared(List.of(first, second), () -> {
+            execute("update wallets");
+            second.call(() -> execute("select 1"));
+        });
+
+        // Then
+        assertThat(SqlStatementCounter.current()).isEqualTo(1);
+        assertThat(CompletableFuture.supplyAsync(() -> second.call(SqlStatementCounter::current)).join()).isEqualTo(2);
+    }
+
+    private Boolean execute(String sql) {
+        try (Connection counted = dataSource.getConnection()) {
+            return counted.createStatement().execute(sql);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package pl.aeh.currencyexchange.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NbpPublicationExpiryTest {
+
+    private static final ZoneId WARSAW = ZoneId.of("Europe/Warsaw");
+
+    @Test
+    @DisplayName("Should expire at today's publication when cached before it")
+    void shouldExpireAtTodaysPublication() {
+        // Given - Wednesday 07:15
+        NbpPublicationExpiry expiry = expiryAt(ZonedDateTime.of(2024, 5, 15, 7, 15, 0, 0, WARSAW));
+
+        // Then
+        assertThat(Duration.ofNanos(expiry.nanosUntilNextPublication())).isEqualTo(Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Should expire at next working day's publication when cached after it")
+    void shouldSkipWeekend() {
+        // Given - Friday 12:15
+        NbpPublicationExpiry expiry = expiryAt(ZonedDateTime.of(2024, 5, 17, 12, 15, 0, 0, WARSAW));
+
+        // Then - Monday 08:15
+        assertThat(Duration.ofNanos(expiry.nanosUntilNextPublication())).isEqualTo(Duration.ofDays(2).plusHours(20));
+    }
+
+    private NbpPublicationExpiry expiryAt(ZonedDateTime now) {
+        return new NbpPublicationExpiry(Clock.fixed(now.toInstant(), WARSAW), WARSAW, LocalTime.of(8, 15));
+    }
+}
@@ -0,0 +1,107 @@
+package pl.aeh.currencyexchange.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlStatementCountingFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        request = new MockHttpServletRequest("POST", "/api/exchange");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/exchange");
+    }
+
+    @Test
+    @DisplayName("Should record the statements of a request by method and URI pattern")
+    void shouldRecordStatementsPerRequest() throws Exception {
+        // Given
+        SqlStatementCountingFilter filter = new SqlStatementCountingFilter(meterRegistry, true);
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), executing(2, "budgetOfThree"));
+
+        // Then
+        assertThat(meterRegistry.get("sql.statements.per.request")
+                .tags("method", "POST", "uri", "/api/exchange")
+                .summary().totalAmount()).isEqualTo(2.0);
+        assertThat(SqlStatementCounter.current()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should fail the request in assertion mode when the budget is exceeded")
+    void shouldFailWhenBudgetExceeded() throws Exception {
+        // Given
+        SqlStatementCountingFilter filter = new SqlStatementCountingFilter(meterRegistry, true);
+
+        FilterChain chain = executing(4, "budgetOfThree");
+
+        // When & Then
+        assertThatThrownBy(() -> filter.doFilter(request, new MockHttpServletResponse(), chain))
+                .isInstanceOf(StatementBudgetExceededException.class)
+                .hasMessageContaining("executed 4 SQL statements, budget is 3");
+    }
+
+    @Test
+    @DisplayName("Should only log when the budget is exceeded outside assertion mode")
+    void shouldOnlyLogWhenNotEnforcing() throws Exception {
+        // Given
+        SqlStatementCountingFilter filter = new SqlStatementCountingFilter(meterRegistry, false);
+
+        FilterChain chain = executing(4, "budgetOfThree");
+
+        // When & Then
+        assertThatCode(() -> filter.doFilter(request, new MockHttpServletResponse(), chain))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    @DisplayName("Should not enforce a budget on endpoints without one")
+    void shouldIgnoreEndpointsWithoutBudget() throws Exception {
+        // Given
+        SqlStatementCountingFilter filter = new SqlStatementCountingFilter(meterRegistry, true);
+
+        FilterChain chain = executing(50, "noBudget");
+
+        // When & Then
+        assertThatCode(() -> filter.doFilter(request, new MockHttpServletResponse(), chain))
+                .doesNotThrowAnyException();
+    }
+
+    /**
+     * Route the request to {@code handler} of {@link Handlers} and return a chain running {@code statements} statements
+     */
+    private FilterChain executing(int statements, String handler) throws Exception {
+        HandlerMethod handlerMethod = new HandlerMethod(new Handlers(), Handlers.class.getDeclaredMethod(handler));
+        SqlStatementCountingFilter.budgetInterceptor().preHandle(request, new MockHttpServletResponse(), handlerMethod);
+        return (req, res) -> {
+            for (int i = 0; i < statements; i++) {
+                SqlStatementCounter.increment();
+            }
+        };
+    }
+
+    static class Handlers {
+
+        @StatementBudget(3)
+        void budgetOfThree() {
+        }
+
+        void noBudget() {
+        }
+    }
+}
@@ -8,19 +8,26 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import pl.aeh.currencyexchange.dto.BackfillResultDto;
+import pl.aeh.currencyexchange.dto.CrossRatesDto;
 import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+import pl.aeh.currencyexchange.exception.ConflictException;
 import pl.aeh.currencyexchange.security.JwtAuthenticationFilter;
 import pl.aeh.currencyexchange.security.JwtUtil;
 import pl.aeh.currencyexchange.service.ExchangeRateService;
+import pl.aeh.currencyexchange.service.RateBackfillService;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,6 +41,9 @@ class ExchangeRateControllerTest {
     @MockBean
     private ExchangeRateService exchangeRateService;
     
+    @MockBean
+    private RateBackfillService rateBackfillService;
+
     @MockBean
     private JwtAuthenticationFilter jwtAuthenticationFilter;
     
@@ -83,4 +93,67 @@ class ExchangeRateControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].code").value("USD"));
     }
+
+    @Test
+    void shouldGetCrossRates() throws Exception {
+        CrossRatesDto crossRates = CrossRatesDto.builder()
+                .version(1L)
+                .rateDate(LocalDate.now())
+                .currencies(List.of("EUR", "USD"))
+                .rates(new BigDecimal[][]{
+                        {BigDecimal.ONE, new BigDecimal("1.052381")},
+                        {new BigDecimal("0.930233"), BigDecimal.ONE}
+                })
+                .build();
+        given(exchangeRateService.getCrossRateMatrix()).willReturn(crossRates);
+
+        mockMvc.perform(get("/api/rates/cross")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currencies[1]").value("USD"))
+                .andExpect(jsonPath("$.rates[0][1]").value(1.052381));
+    }
+
+    @Test
+    void shouldStartBackfillAndReturnAccepted() throws Exception {
+        BackfillResultDto progress = BackfillResultDto.builder()
+                .status(BackfillResultDto.Status.RUNNING)
+                .from(LocalDate.of(2024, 1, 1))
+                .to(LocalDate.of(2024, 6, 30))
+                .chunks(2)
+                .skippedChunks(1)
+                .completedChunks(1)
+                .build();
+        given(rateBackfillService.start(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30))).willReturn(progress);
+
+        mockMvc.perform(post("/api/rates/backfill")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-06-30"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/rates/backfill"))
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andExpect(jsonPath("$.completedChunks").value(1));
+    }
+
+    @Test
+    void shouldRejectBackfillWhileAnotherIsRunning() throws Exception {
+        given(rateBackfillService.start(any(), any())).willThrow(new ConflictException("Rate backfill is already running"));
+
+        mockMvc.perform(post("/api/rates/backfill"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldGetBackfillProgress() throws Exception {
+        given(rateBackfillService.progress()).willReturn(BackfillResultDto.builder()
+                .status(BackfillResultDto.Status.COMPLETED)
+                .chunks(2)
+                .completedChunks(2)
+                .build());
+
+        mockMvc.perform(get("/api/rates/backfill"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.completedChunks").value(2));
+    }
 }
@@ -0,0 +1,247 @@
+package pl.aeh.currencyexchange.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import pl.aeh.currencyexchange.PostgresTestSupport;
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.Wallet;
+import pl.aeh.currencyexchange.repository.UserRepository;
+import pl.aeh.currencyexchange.repository.WalletRepository;
+import pl.aeh.currencyexchange.security.CustomUserDetailsService;
+import pl.aeh.currencyexchange.security.JwtUtil;
+import pl.aeh.currencyexchange.service.IdempotencyService;
+import pl.aeh.currencyexchange.service.RateSnapshotStore;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives the budgeted endpoints end to end against PostgreSQL in every wallet concurrency mode.
+ * Statement counting is switched on here with budgets enforced, so a request over its {@code @StatementBudget}
+ * fails; each test also checks the recorded count, so a budget that is never measured fails as well.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {"sql.statement-counting.enabled=true", "sql.statement-budget.fail-on-exceed=true"})
+@DisplayName("SQL Statement Budget Tests (PostgreSQL)")
+class StatementBudgetIntegrationTest extends PostgresTestSupport {
+
+    private static final int EXCHANGE_BUDGET = 10;
+    private static final int TOP_UP_BUDGET = 8;
+    private static final int READ_BUDGET = 3;
+
+    @Nested
+    @DisplayName("Optimistic mode")
+    @TestPropertySource(properties = "wallet.concurrency.mode=optimistic")
+    class Optimistic extends BudgetScenarios {
+    }
+
+    @Nested
+    @DisplayName("Pessimistic mode")
+    @TestPropertySource(properties = "wallet.concurrency.mode=pessimistic")
+    class Pessimistic extends BudgetScenarios {
+    }
+
+    @Nested
+    @DisplayName("Atomic mode")
+    @TestPropertySource(properties = "wallet.concurrency.mode=atomic")
+    class Atomic extends BudgetScenarios {
+    }
+
+    @Nested
+    @DisplayName("Single-writer mode")
+    @TestPropertySource(properties = {"wallet.concurrency.mode=single-writer", "wallet.single-writer.lanes=2"})
+    class SingleWriter extends BudgetScenarios {
+    }
+
+    @Nested
+    @DisplayName("Group commit")
+    @TestPropertySource(properties = {"wallet.concurrency.mode=optimistic", "wallet.group-commit.enabled=true"})
+    class GroupCommit extends BudgetScenarios {
+    }
+
+    abstract class BudgetScenarios {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private UserRepository userRepository;
+
+        @Autowired
+        private WalletRepository walletRepository;
+
+        @Autowired
+        private PasswordEncoder passwordEncoder;
+
+        @Autowired
+        private CustomUserDetailsService userDetailsService;
+
+        @Autowired
+        private JwtUtil jwtUtil;
+
+        @Autowired
+        private RateSnapshotStore rateSnapshotStore;
+
+        private String token;
+
+        @BeforeEach
+        void setUp() {
+            // A new user per test, so accounts cached by single-writer lanes never outlive their rows
+            String email = "budget-" + UUID.randomUUID() + "@example.com";
+            User user = userRepository.save(User.builder().email(email).password(passwordEncoder.encode("password123")).build());
+            walletRepository.save(Wallet.builder().user(user).currency("PLN").balance(new BigDecimal("1000.0000")).build());
+            token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(email));
+
+            rateSnapshotStore.publish(List.of(rate("USD", "3.9000", "4.0000"), rate("EUR", "4.2000", "4.3000")));
+        }
+
+        @AfterEach
+        void tearDown() {
+            jdbcTemplate.update("DELETE FROM transactions");
+            jdbcTemplate.update("DELETE FROM idempotency_keys");
+            jdbcTemplate.update("DELETE FROM wallets");
+            jdbcTemplate.update("DELETE FROM users");
+        }
+
+        @Test
+        @DisplayName("Should top up within the statement budget")
+        void shouldTopUpWithinBudget() throws Exception {
+            // When
+            mockMvc.perform(authorized(post("/api/wallets/topup"))
+                            .header(IdempotencyService.HEADER, UUID.randomUUID().toString())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"amount\": 50.00}"))
+                    .andExpect(status().isOk());
+
+            // Then
+            assertWithinBudget("POST", "/api/wallets/topup", TOP_UP_BUDGET);
+        }
+
+        @Test
+        @DisplayName("Should exchange into a new and an existing wallet within the statement budget")
+        void shouldExchangeWithinBudget() throws Exception {
+            // When
+            exchange(UUID.randomUUID().toString(), "PLN", "USD", "100.00");
+            exchange(UUID.randomUUID().toString(), "PLN", "USD", "40.00");
+            exchange(null, "USD", "EUR", "10.00");
+
+            // Then
+            assertWithinBudget("POST", "/api/exchange", EXCHANGE_BUDGET);
+        }
+
+        @Test
+        @DisplayName("Should replay a repeated exchange within the statement budget")
+        void shouldReplayWithinBudget() throws Exception {
+            // Given
+            String key = UUID.randomUUID().toString();
+            JsonNode first = exchange(key, "PLN", "USD", "100.00");
+
+            // When
+            JsonNode replayed = exchange(key, "PLN", "USD", "100.00");
+
+            // Then
+            assertThat(replayed.get("id").asLong()).isEqualTo(first.get("id").asLong());
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class)).isEqualTo(1);
+            assertWithinBudget("POST", "/api/exchange", EXCHANGE_BUDGET);
+        }
+
+        @Test
+        @DisplayName("Should read wallets and history within the statement budget")
+        void shouldReadWithinBudget() throws Exception {
+            // Given
+            exchange(null, "PLN", "USD", "100.00");
+            exchange(null, "PLN", "EUR", "100.00");
+
+            // When
+            mockMvc.perform(authorized(get("/api/wallets/me"))).andExpect(status().isOk());
+            mockMvc.perform(authorized(get("/api/transactions"))).andExpect(status().isOk());
+            String firstPage = mockMvc.perform(authorized(get("/api/transactions/page").param("limit", "1")))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+            mockMvc.perform(authorized(get("/api/transactions/page").param("limit", "1").param("cursor", cursor)))
+                    .andExpect(status().isOk());
+
+            // Then
+            assertWithinBudget("GET", "/api/wallets/me", READ_BUDGET);
+            assertWithinBudget("GET", "/api/transactions", READ_BUDGET);
+            assertWithinBudget("GET", "/api/transactions/page", READ_BUDGET);
+        }
+
+        private JsonNode exchange(String key, String from, String to, String amount) throws Exception {
+            MockHttpServletRequestBuilder request = authorized(post("/api/exchange"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(String.format("{\"fromCurrency\": \"%s\", \"toCurrency\": \"%s\", \"amount\": %s}",
+                            from, to, amount));
+            if (key != null) {
+                request.header(IdempotencyService.HEADER, key);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            return objectMapper.readTree(body);
+        }
+
+        private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+            return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+
+        /**
+         * Every request to the endpoint executed at least one counted statement and none exceeded the budget
+         */
+        private void assertWithinBudget(String method, String uri, int budget) {
+            DistributionSummary statements = meterRegistry.get("sql.statements.per.request")
+                    .tags("method", method, "uri", uri)
+                    .summary();
+            assertThat(statements.count()).isPositive();
+            assertThat(statements.max()).isBetween(1.0, (double) budget);
+        }
+    }
+
+    private static ExchangeRateDto rate(String code, String bid, String ask) {
+        return ExchangeRateDto.builder()
+                .code(code)
+                .currency(code)
+                .bid(new BigDecimal(bid))
+                .ask(new BigDecimal(ask))
+                .rateDate(LocalDate.now())
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import pl.aeh.currencyexchange.PostgresTestSupport;
+import pl.aeh.currencyexchange.model.ExchangeRate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("Exchange Rate Repository Tests (PostgreSQL)")
+class ExchangeRateRepositoryPostgresTest extends PostgresTestSupport {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 1, 2);
+
+    @Autowired
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @BeforeEach
+    void setUp() {
+        exchangeRateRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should insert all new rates and return their count")
+    void shouldInsertNewRates() {
+        // When
+        int inserted = exchangeRateRepository.upsertAll(List.of(
+                rate("USD", DATE, "3.9500"), rate("EUR", DATE, "4.3500"), rate("USD", DATE.plusDays(1), "3.9700")));
+
+        // Then
+        assertThat(inserted).isEqualTo(3);
+        assertThat(exchangeRateRepository.findAllByRateDateBetween(DATE, DATE.plusDays(1))).hasSize(3);
+        ExchangeRate usd = exchangeRateRepository.findByCurrencyAndRateDate("USD", DATE).orElseThrow();
+        assertThat(usd.getBid()).isEqualByComparingTo("3.9500");
+        assertThat(usd.getCurrencyName()).isEqualTo("USD name");
+        assertThat(usd.getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should skip existing rates and count only inserted ones")
+    void shouldSkipExistingRates() {
+        // Given
+        exchangeRateRepository.upsertAll(List.of(rate("USD", DATE, "3.9500")));
+
+        // When
+        int inserted = exchangeRateRepository.upsertAll(List.of(
+                rate("USD", DATE, "9.9900"), rate("EUR", DATE, "4.3500")));
+
+        // Then
+        assertThat(inserted).isEqualTo(1);
+        assertThat(exchangeRateRepository.findByCurrencyAndRateDate("USD", DATE).orElseThrow().getBid())
+                .isEqualByComparingTo("3.9500");
+        assertThat(exchangeRateRepository.countByCurrency("USD")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should return an exact count for more rows than a rewritten batch holds")
+    void shouldCountLargeInsertExactly() {
+        // Given
+        // reWriteBatchedInserts groups batches of up to 128 rows and reports SUCCESS_NO_INFO for them
+        List<ExchangeRate> rates = new ArrayList<>();
+        for (int day = 0; day < 300; day++) {
+            rates.add(rate("USD", DATE.plusDays(day), "3.9500"));
+        }
+        exchangeRateRepository.upsertAll(rates.subList(0, 100));
+
+        // When
+        int inserted = exchangeRateRepository.upsertAll(rates);
+
+        // Then
+        assertThat(inserted).isEqualTo(200);
+        assertThat(exchangeRateRepository.countByCurrency("USD")).isEqualTo(300);
+    }
+
+    @Test
+    @DisplayName("Should insert a rate repeated within one call only once")
+    void shouldInsertDuplicateWithinCallOnce() {
+        // When
+        int inserted = exchangeRateRepository.upsertAll(List.of(rate("USD", DATE, "3.9500"), rate("USD", DATE, "3.9600")));
+
+        // Then
+        assertThat(inserted).isEqualTo(1);
+        assertThat(exchangeRateRepository.countByCurrency("USD")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not run a statement for no rates")
+    void shouldHandleEmptyList() {
+        // When & Then
+        assertThat(exchangeRateRepository.upsertAll(List.of())).isZero();
+    }
+
+    private static ExchangeRate rate(String currency, LocalDate date, String bid) {
+        return ExchangeRate.builder()
+                .currency(currency)
+                .rateDate(date)
+                .bid(new BigDecimal(bid))
+                .ask(new BigDecimal(bid).add(new BigDecimal("0.1000")))
+                .currencyName(currency + " name")
+                .build();
+    }
+}
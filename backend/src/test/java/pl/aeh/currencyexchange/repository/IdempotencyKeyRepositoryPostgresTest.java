@@ -0,0 +1,236 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.PostgresTestSupport;
+import pl.aeh.currencyexchange.model.IdempotencyKey;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.UserRole;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("Idempotency Key Repository Tests (PostgreSQL)")
+class IdempotencyKeyRepositoryPostgresTest extends PostgresTestSupport {
+
+    private static final String EMAIL = "idempotent@example.com";
+    private static final String KEY = "4f1c2a9e-retry";
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll();
+        user(EMAIL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        // The transactional tests commit their rows
+        deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should record a completed key with its response")
+    void shouldRecordCompletedKey() {
+        // When
+        boolean recorded = idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":1}");
+
+        // Then
+        assertThat(recorded).isTrue();
+        IdempotencyKey key = idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY).orElseThrow();
+        assertThat(key.getOperation()).isEqualTo("exchange");
+        assertThat(key.getRequestHash()).isEqualTo("hash-1");
+        assertThat(key.getResponseBody()).isEqualTo("{\"id\":1}");
+        assertThat(key.getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should keep the first response when a key is recorded again")
+    void shouldNotRecordExistingKey() {
+        // Given
+        idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":1}");
+
+        // When
+        boolean recorded = idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":2}");
+
+        // Then
+        assertThat(recorded).isFalse();
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY).orElseThrow().getResponseBody())
+                .isEqualTo("{\"id\":1}");
+        assertThat(idempotencyKeyRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should scope keys to their user")
+    void shouldScopeKeysPerUser() {
+        // Given
+        user("other@example.com");
+        idempotencyKeyRepository.record(EMAIL, KEY, "topup", "hash-1", "{\"id\":1}");
+
+        // When
+        boolean recorded = idempotencyKeyRepository.record("other@example.com", KEY, "topup", "hash-2", "{\"id\":2}");
+
+        // Then
+        assertThat(recorded).isTrue();
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey("other@example.com", KEY).orElseThrow().getRequestHash())
+                .isEqualTo("hash-2");
+    }
+
+    @Test
+    @DisplayName("Should record nothing for an unknown user")
+    void shouldNotRecordForUnknownUser() {
+        // When & Then
+        assertThat(idempotencyKeyRepository.record("nobody@example.com", KEY, "topup", "hash-1", "{}")).isFalse();
+        assertThat(idempotencyKeyRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should purge only keys older than the cutoff")
+    void shouldPurgeExpiredKeys() {
+        // Given
+        idempotencyKeyRepository.record(EMAIL, "old", "topup", "hash-1", "{}");
+        idempotencyKeyRepository.record(EMAIL, "recent", "topup", "hash-2", "{}");
+        jdbcTemplate.update("UPDATE idempotency_keys SET created_at = CURRENT_TIMESTAMP - INTERVAL '2 days' " +
+                "WHERE idempotency_key = 'old'");
+
+        // When
+        int purged = idempotencyKeyRepository.purgeCreatedBefore(LocalDateTime.now().minusDays(1));
+
+        // Then
+        assertThat(purged).isEqualTo(1);
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, "old")).isEmpty();
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, "recent")).isPresent();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should leave no key behind when the surrounding transaction rolls back")
+    void shouldDiscardKeyWithRolledBackTransaction() {
+        // When
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":1}");
+            status.setRollbackOnly();
+        });
+
+        // Then
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY)).isEmpty();
+        assertThat(idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":2}")).isTrue();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should let only the first of two concurrent transactions record a key")
+    void shouldRecordConcurrentKeyOnce() throws Exception {
+        // When
+        boolean secondRecorded = recordWhileFirstTransactionOpen(false);
+
+        // Then
+        assertThat(secondRecorded).isFalse();
+        assertThat(idempotencyKeyRepository.count()).isEqualTo(1);
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY).orElseThrow().getResponseBody())
+                .isEqualTo("{\"id\":1}");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should record a key once the concurrent transaction holding it rolls back")
+    void shouldRecordKeyAfterConcurrentRollback() throws Exception {
+        // When
+        boolean secondRecorded = recordWhileFirstTransactionOpen(true);
+
+        // Then
+        assertThat(secondRecorded).isTrue();
+        assertThat(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY).orElseThrow().getResponseBody())
+                .isEqualTo("{\"id\":2}");
+    }
+
+    /**
+     * Record the key in one transaction and, while it is still open, in a second one;
+     * the second must wait for the first to end before it learns whether it got the key.
+     *
+     * @return whether the second transaction recorded the key
+     */
+    private boolean recordWhileFirstTransactionOpen(boolean rollbackFirst) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch firstRecorded = new CountDownLatch(1);
+        CountDownLatch finishFirst = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> transactionTemplate.execute(status -> {
+                boolean recorded = idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":1}");
+                firstRecorded.countDown();
+                await(finishFirst);
+                if (rollbackFirst) {
+                    status.setRollbackOnly();
+                }
+                return recorded;
+            }));
+            await(firstRecorded);
+            Future<Boolean> second = executor.submit(() -> transactionTemplate.execute(status ->
+                    idempotencyKeyRepository.record(EMAIL, KEY, "exchange", "hash-1", "{\"id\":2}")));
+
+            Thread.sleep(200);
+            assertThat(second).isNotDone();
+            finishFirst.countDown();
+
+            assertThat(first.get(10, TimeUnit.SECONDS)).isTrue();
+            return second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void user(String email) {
+        userRepository.saveAndFlush(User.builder()
+                .email(email)
+                .password("password123")
+                .role(UserRole.USER)
+                .enabled(true)
+                .build());
+    }
+
+    private void deleteAll() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+        jdbcTemplate.update("DELETE FROM wallets");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+}
@@ -5,9 +5,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
+import pl.aeh.currencyexchange.dto.TransactionDto;
 import pl.aeh.currencyexchange.model.*;
 
 import java.math.BigDecimal;
@@ -118,4 +120,54 @@ class TransactionRepositoryTest {
         // Then
         assertThat(count).isEqualTo(2);
     }
+
+    @Test
+    @DisplayName("Should page through history by keyset without gaps or duplicates")
+    void shouldPageThroughHistoryByKeyset() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            transactionRepository.save(Transaction.builder()
+                    .user(testUser)
+                    .type(TransactionType.BUY)
+                    .status(TransactionStatus.COMPLETED)
+                    .build());
+        }
+
+        // When
+        List<TransactionDto> firstPage = transactionRepository.findPageByUserEmail(testUser.getEmail(), Limit.of(3));
+        TransactionDto last = firstPage.get(firstPage.size() - 1);
+        List<TransactionDto> secondPage = transactionRepository.findPageByUserEmailAfter(
+                testUser.getEmail(), last.getCreatedAt(), last.getId(), Limit.of(3));
+
+        // Then
+        assertThat(firstPage).hasSize(3);
+        assertThat(secondPage).hasSize(2);
+        assertThat(secondPage).extracting(TransactionDto::getId)
+                .doesNotContainAnyElementsOf(firstPage.stream().map(TransactionDto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should project history straight into DTOs")
+    void shouldProjectHistoryIntoDtos() {
+        // Given
+        transactionRepository.save(Transaction.builder()
+                .user(testUser)
+                .type(TransactionType.DEPOSIT)
+                .fromCurrency("PLN")
+                .toCurrency("PLN")
+                .fromAmount(new BigDecimal("100.00"))
+                .toAmount(new BigDecimal("100.00"))
+                .exchangeRate(BigDecimal.ONE)
+                .status(TransactionStatus.COMPLETED)
+                .build());
+
+        // When
+        List<TransactionDto> history = transactionRepository.findDtosByUserEmail(testUser.getEmail());
+
+        // Then
+        assertThat(history).hasSize(1);
+        assertThat(history.get(0).getType()).isEqualTo("DEPOSIT");
+        assertThat(history.get(0).getStatus()).isEqualTo("COMPLETED");
+        assertThat(history.get(0).getFromAmount()).isEqualByComparingTo("100.00");
+    }
 }
@@ -0,0 +1,349 @@
+package pl.aeh.currencyexchange.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pl.aeh.currencyexchange.PostgresTestSupport;
+import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.model.TransactionStatus;
+import pl.aeh.currencyexchange.model.TransactionType;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.UserRole;
+import pl.aeh.currencyexchange.model.Wallet;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("Wallet Repository Tests (PostgreSQL)")
+class WalletRepositoryPostgresTest extends PostgresTestSupport {
+
+    private static final String EMAIL = "atomic@example.com";
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll();
+        user = userRepository.saveAndFlush(User.builder()
+                .email(EMAIL)
+                .password("password123")
+                .role(UserRole.USER)
+                .enabled(true)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        // The concurrency test commits its rows
+        deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should debit, credit and record an exchange in one statement")
+    void shouldTransferAtomically() {
+        // Given
+        wallet("PLN", "1000.0000");
+        wallet("USD", "10.0000");
+
+        // When
+        Optional<Transaction> transaction = walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("400.0000"),
+                "USD", new BigDecimal("100.0000"), new BigDecimal("4.000000"), "Exchange PLN to USD");
+
+        // Then
+        assertThat(transaction).isPresent();
+        assertThat(balance("PLN")).contains(new BigDecimal("600.0000"));
+        assertThat(balance("USD")).contains(new BigDecimal("110.0000"));
+        assertThat(version("PLN")).isEqualTo(1L);
+        assertThat(version("USD")).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Should return the ledger row with its generated id and creation time")
+    void shouldReturnLedgerRow() {
+        // Given
+        wallet("PLN", "1000.0000");
+
+        // When
+        Transaction transaction = walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("400.0000"),
+                "USD", new BigDecimal("100.0000"), new BigDecimal("4.000000"), "Exchange PLN to USD").orElseThrow();
+
+        // Then
+        assertThat(transaction.getId()).isPositive();
+        assertThat(transaction.getCreatedAt()).isNotNull();
+        Transaction stored = transactionRepository.findById(transaction.getId()).orElseThrow();
+        assertThat(stored.getType()).isEqualTo(TransactionType.BUY);
+        assertThat(stored.getFromAmount()).isEqualByComparingTo("400.0000");
+        assertThat(stored.getToAmount()).isEqualByComparingTo("100.0000");
+        assertThat(stored.getExchangeRate()).isEqualByComparingTo("4.000000");
+        assertThat(stored.getCreatedAt()).isEqualTo(transaction.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Should take ledger ids from the pooled block shared with saved transactions")
+    void shouldAllocateLedgerIdsFromPooledBlock() {
+        // Given
+        wallet("PLN", "1000.0000");
+
+        // When
+        Long first = walletRepository.transferAtomically(EMAIL, "PLN", BigDecimal.ONE,
+                "USD", BigDecimal.ONE, BigDecimal.ONE, "Exchange PLN to USD").orElseThrow().getId();
+        Long second = walletRepository.transferAtomically(EMAIL, "PLN", BigDecimal.ONE,
+                "USD", BigDecimal.ONE, BigDecimal.ONE, "Exchange PLN to USD").orElseThrow().getId();
+        Transaction saved = transactionRepository.saveAndFlush(Transaction.builder()
+                .user(user)
+                .type(TransactionType.DEPOSIT)
+                .fromCurrency("PLN")
+                .toCurrency("PLN")
+                .fromAmount(BigDecimal.ONE)
+                .toAmount(BigDecimal.ONE)
+                .exchangeRate(BigDecimal.ONE)
+                .status(TransactionStatus.COMPLETED)
+                .build());
+
+        // Then
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(saved.getId()).isEqualTo(second + 1);
+    }
+
+    @Test
+    @DisplayName("Should change nothing and return empty when funds are insufficient")
+    void shouldChangeNothingWhenFundsAreInsufficient() {
+        // Given
+        wallet("PLN", "100.0000");
+        wallet("USD", "10.0000");
+
+        // When
+        Optional<Transaction> transaction = walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("100.0001"),
+                "USD", new BigDecimal("25.0000"), new BigDecimal("4.000000"), "Exchange PLN to USD");
+
+        // Then
+        assertThat(transaction).isEmpty();
+        assertThat(balance("PLN")).contains(new BigDecimal("100.0000"));
+        assertThat(balance("USD")).contains(new BigDecimal("10.0000"));
+        assertThat(version("PLN")).isZero();
+        assertThat(transactionRepository.countByUserId(user.getId())).isZero();
+    }
+
+    @Test
+    @DisplayName("Should return empty when the source wallet or user is missing")
+    void shouldReturnEmptyWhenSourceIsMissing() {
+        // When & Then
+        assertThat(walletRepository.transferAtomically(EMAIL, "EUR", BigDecimal.ONE,
+                "USD", BigDecimal.ONE, BigDecimal.ONE, "Exchange EUR to USD")).isEmpty();
+        assertThat(walletRepository.transferAtomically("nobody@example.com", "PLN", BigDecimal.ONE,
+                "USD", BigDecimal.ONE, BigDecimal.ONE, "Exchange PLN to USD")).isEmpty();
+        assertThat(balance("USD")).isEmpty();
+        assertThat(transactionRepository.countByUserId(user.getId())).isZero();
+    }
+
+    @Test
+    @DisplayName("Should create a missing target wallet through the insert branch of the upsert")
+    void shouldCreateMissingTargetWallet() {
+        // Given
+        wallet("PLN", "1000.0000");
+
+        // When
+        walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("400.0000"),
+                "EUR", new BigDecimal("92.5000"), new BigDecimal("4.324324"), "Exchange PLN to EUR");
+
+        // Then
+        assertThat(balance("EUR")).contains(new BigDecimal("92.5000"));
+        assertThat(version("EUR")).isZero();
+        assertThat(walletRepository.countByUserId(user.getId())).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should credit a wallet and record the deposit in one statement")
+    void shouldDepositAtomically() {
+        // Given
+        Wallet pln = wallet("PLN", "100.0000");
+
+        // When
+        Optional<Wallet> credited = walletRepository.depositAtomically(EMAIL, "PLN", new BigDecimal("50.5000"), "Top-up");
+
+        // Then
+        assertThat(credited).isPresent();
+        assertThat(credited.get().getId()).isEqualTo(pln.getId());
+        assertThat(credited.get().getBalance()).isEqualByComparingTo("150.5000");
+        assertThat(balance("PLN")).contains(new BigDecimal("150.5000"));
+        assertThat(transactionRepository.countByUserIdAndType(user.getId(), TransactionType.DEPOSIT)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not deposit into or create a missing wallet")
+    void shouldNotDepositIntoMissingWallet() {
+        // When
+        Optional<Wallet> credited = walletRepository.depositAtomically(EMAIL, "PLN", BigDecimal.TEN, "Top-up");
+
+        // Then
+        assertThat(credited).isEmpty();
+        assertThat(balance("PLN")).isEmpty();
+        assertThat(transactionRepository.countByUserId(user.getId())).isZero();
+    }
+
+    @Test
+    @DisplayName("Should write balances of unchanged wallets and create new ones")
+    void shouldWriteBalances() {
+        // Given
+        Wallet pln = wallet("PLN", "100.0000");
+        Wallet cachedPln = Wallet.builder().id(pln.getId()).currency("PLN").balance(new BigDecimal("60.0000")).version(0L).build();
+        Wallet newUsd = Wallet.builder().currency("USD").balance(new BigDecimal("10.0000")).build();
+
+        // When
+        int written = walletRepository.writeBalances(user.getId(), List.of(cachedPln, newUsd));
+
+        // Then
+        assertThat(written).isEqualTo(2);
+        assertThat(balance("PLN")).contains(new BigDecimal("60.0000"));
+        assertThat(balance("USD")).contains(new BigDecimal("10.0000"));
+        assertThat(cachedPln.getVersion()).isEqualTo(1L).isEqualTo(version("PLN"));
+        assertThat(newUsd.getId()).isNotNull();
+        assertThat(newUsd.getVersion()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not overwrite a wallet changed since it was loaded")
+    void shouldRejectStaleBalance() {
+        // Given
+        Wallet pln = wallet("PLN", "100.0000");
+        Wallet cachedPln = Wallet.builder().id(pln.getId()).currency("PLN").balance(new BigDecimal("60.0000")).version(0L).build();
+        walletRepository.depositAtomically(EMAIL, "PLN", new BigDecimal("25.0000"), "Top-up");
+
+        // When & Then
+        assertThatThrownBy(() -> walletRepository.writeBalances(user.getId(), List.of(cachedPln)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(balance("PLN")).contains(new BigDecimal("125.0000"));
+        assertThat(cachedPln.getVersion()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not overwrite a wallet created since the account was loaded")
+    void shouldRejectWalletCreatedElsewhere() {
+        // Given
+        wallet("USD", "5.0000");
+        Wallet newUsd = Wallet.builder().currency("USD").balance(new BigDecimal("10.0000")).build();
+
+        // When & Then
+        assertThatThrownBy(() -> walletRepository.writeBalances(user.getId(), List.of(newUsd)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(balance("USD")).contains(new BigDecimal("5.0000"));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Should never overdraw a wallet under concurrent opposite transfers")
+    void shouldNeverOverdrawUnderConcurrentTransfers() throws Exception {
+        // Given
+        wallet("PLN", "100.0000");
+        wallet("USD", "100.0000");
+        BigDecimal amount = new BigDecimal("30.0000");
+        int threads = 8;
+        int transfersPerThread = 25;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String from = t % 2 == 0 ? "PLN" : "USD";
+            String to = t % 2 == 0 ? "USD" : "PLN";
+            results.add(executor.submit(() -> {
+                start.await();
+                int applied = 0;
+                for (int i = 0; i < transfersPerThread; i++) {
+                    if (transferRetryingDeadlocks(from, to, amount)) {
+                        applied++;
+                    }
+                }
+                return applied;
+            }));
+        }
+        start.countDown();
+        int applied = 0;
+        for (Future<Integer> result : results) {
+            applied += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        BigDecimal pln = balance("PLN").orElseThrow();
+        BigDecimal usd = balance("USD").orElseThrow();
+        assertThat(pln).isNotNegative();
+        assertThat(usd).isNotNegative();
+        assertThat(pln.add(usd)).isEqualByComparingTo("200.0000");
+        assertThat(applied).isPositive();
+        assertThat(transactionRepository.countByUserId(user.getId())).isEqualTo(applied);
+    }
+
+    /**
+     * Opposite transfers lock the same two rows in opposite order; PostgreSQL aborts one of them
+     * as a deadlock victim, which the wallet executor retries the same way
+     */
+    private boolean transferRetryingDeadlocks(String from, String to, BigDecimal amount) {
+        while (true) {
+            try {
+                return walletRepository.transferAtomically(EMAIL, from, amount, to, amount,
+                        BigDecimal.ONE, "Exchange " + from + " to " + to).isPresent();
+            } catch (PessimisticLockingFailureException e) {
+                // deadlock victim, nothing was changed
+            }
+        }
+    }
+
+    private Wallet wallet(String currency, String balance) {
+        return walletRepository.saveAndFlush(Wallet.builder()
+                .user(user)
+                .currency(currency)
+                .balance(new BigDecimal(balance))
+                .build());
+    }
+
+    private Optional<BigDecimal> balance(String currency) {
+        return walletRepository.getBalanceByUserIdAndCurrency(user.getId(), currency);
+    }
+
+    private Long version(String currency) {
+        return jdbcTemplate.queryForObject("SELECT version FROM wallets WHERE user_id = ? AND currency = ?",
+                Long.class, user.getId(), currency);
+    }
+
+    private void deleteAll() {
+        jdbcTemplate.update("DELETE FROM transactions");
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+        jdbcTemplate.update("DELETE FROM wallets");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.ActiveProfiles;
+import pl.aeh.currencyexchange.dto.WalletDto;
 import pl.aeh.currencyexchange.model.User;
 import pl.aeh.currencyexchange.model.UserRole;
 import pl.aeh.currencyexchange.model.Wallet;
@@ -136,6 +137,23 @@ class WalletRepositoryTest {
                 .containsExactly("EUR", "GBP", "USD");
     }
 
+    @Test
+    @DisplayName("Should project wallets into DTOs by user email")
+    void shouldProjectWalletsByUserEmail() {
+        // Given
+        walletRepository.save(Wallet.builder().user(testUser).currency("USD").balance(BigDecimal.ONE).build());
+        walletRepository.save(Wallet.builder().user(testUser).currency("EUR").balance(BigDecimal.TEN).build());
+
+        // When
+        List<WalletDto> wallets = walletRepository.findDtosByUserEmail(testUser.getEmail());
+
+        // Then
+        assertThat(wallets)
+                .extracting(WalletDto::getCurrency)
+                .containsExactly("EUR", "USD");
+        assertThat(wallets.get(0).getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
     @Test
     @DisplayName("Should enforce unique constraint on user_id and currency")
     void shouldEnforceUniqueConstraintOnUserIdAndCurrency() {
@@ -250,6 +268,22 @@ class WalletRepositoryTest {
         assertThat(updated.getUpdatedAt()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Should lock only the requested wallets in id order")
+    void shouldLockRequestedWalletsInIdOrder() {
+        // Given
+        Wallet usd = walletRepository.save(Wallet.builder().user(testUser).currency("USD").build());
+        Wallet pln = walletRepository.save(Wallet.builder().user(testUser).currency("PLN").build());
+        walletRepository.save(Wallet.builder().user(testUser).currency("EUR").build());
+
+        // When
+        List<Wallet> locked = walletRepository.lockByUserEmailAndCurrencies(
+                "wallet-test@example.com", List.of("PLN", "USD", "GBP"));
+
+        // Then
+        assertThat(locked).extracting(Wallet::getId).containsExactly(usd.getId(), pln.getId());
+    }
+
     @Test
     @DisplayName("Should enforce positive balance constraint")
     void shouldEnforcePositiveBalanceConstraint() {
@@ -0,0 +1,176 @@
+package pl.aeh.currencyexchange.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    private static final String EMAIL = "jan@example.com";
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 60_000L);
+        jwtUtil.init();
+
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, tokenRevocationList, meterRegistry);
+        ReflectionTestUtils.setField(filter, "stateless", true);
+        when(tokenRevocationList.isLoaded()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Should authenticate from token claims without loading the user")
+    void shouldAuthenticateFromClaims() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(user(true));
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.getName()).isEqualTo(EMAIL);
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_ADMIN");
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    @DisplayName("Should reject tokens of users on the revocation list")
+    void shouldRejectRevokedUser() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(user(true));
+        when(tokenRevocationList.isRevoked(EMAIL)).thenReturn(true);
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(meterRegistry.get("jwt.authentication")
+                .tags("mode", "stateless", "result", "rejected").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should reject tokens claiming a role the user no longer holds")
+    void shouldRejectRevokedRole() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(user(true));
+        when(tokenRevocationList.hasRevokedRole(eq(EMAIL), anyCollection())).thenReturn(true);
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(meterRegistry.get("jwt.authentication")
+                .tags("mode", "stateless", "result", "rejected").timer().count()).isEqualTo(1);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the database for tokens without role claims")
+    void shouldFallBackForLegacyTokens() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(java.util.Map.of(), user(true));
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(user(true));
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        verify(userDetailsService).loadUserByUsername(EMAIL);
+    }
+
+    @Test
+    @DisplayName("Should authenticate an admin from the database until the revocation list is loaded")
+    void shouldAuthenticateAdminBeforeRevocationListLoaded() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(user(true));
+        when(tokenRevocationList.isLoaded()).thenReturn(false);
+        when(userDetailsService.loadUserByUsername(EMAIL)).thenReturn(user(true));
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_ADMIN");
+        verify(tokenRevocationList, never()).hasRevokedRole(anyString(), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should reject a user disabled in the database until the revocation list is loaded")
+    void shouldRejectDisabledUserBeforeRevocationListLoaded() throws Exception {
+        // Given
+        String token = jwtUtil.generateToken(user(true));
+        when(tokenRevocationList.isLoaded()).thenReturn(false);
+        when(userDetailsService.loadUserByUsername(EMAIL)).thenReturn(user(false));
+
+        // When
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(meterRegistry.get("jwt.authentication")
+                .tags("mode", "stateless", "result", "rejected").timer().count()).isEqualTo(1);
+        verify(tokenRevocationList, never()).isRevoked(anyString());
+    }
+
+    private UserDetails user(boolean enabled) {
+        return User.withUsername(EMAIL)
+                .password("secret")
+                .authorities("ROLE_ADMIN")
+                .disabled(!enabled)
+                .build();
+    }
+
+    private MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/wallets");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,60 @@
+package pl.aeh.currencyexchange.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTest {
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 60_000L);
+        jwtUtil.init();
+    }
+
+    @Test
+    @DisplayName("Should serve repeated parses of the same token from the verified-token cache")
+    void shouldCacheVerifiedClaims() {
+        // Given
+        String token = jwtUtil.generateToken(user());
+
+        // When
+        Claims first = jwtUtil.parseClaims(token);
+        Claims second = jwtUtil.parseClaims(token);
+
+        // Then
+        assertThat(second).isSameAs(first);
+        assertThat(first.getSubject()).isEqualTo("jan@example.com");
+        assertThat(first.get(JwtUtil.ENABLED_CLAIM, Boolean.class)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reject expired tokens instead of caching them")
+    void shouldRejectExpiredToken() {
+        // Given
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", -1_000L);
+        String token = jwtUtil.generateToken(user());
+
+        // When & Then
+        assertThatThrownBy(() -> jwtUtil.parseClaims(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    private UserDetails user() {
+        return User.withUsername("jan@example.com")
+                .password("secret")
+                .authorities("ROLE_USER")
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package pl.aeh.currencyexchange.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.aeh.currencyexchange.model.UserRole;
+import pl.aeh.currencyexchange.repository.UserRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationListTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TokenRevocationList tokenRevocationList;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationList = new TokenRevocationList(userRepository);
+        ReflectionTestUtils.setField(tokenRevocationList, "stateless", true);
+    }
+
+    @Test
+    @DisplayName("Should report the lists as not loaded until the first refresh")
+    void shouldNotBeLoadedBeforeFirstRefresh() {
+        // Given
+        when(userRepository.findDisabledEmails()).thenReturn(List.of());
+        when(userRepository.findEmailsByRole(UserRole.ADMIN)).thenReturn(List.of());
+        boolean loadedAtStartup = tokenRevocationList.isLoaded();
+
+        // When
+        tokenRevocationList.refresh();
+
+        // Then
+        assertThat(loadedAtStartup).isFalse();
+        assertThat(tokenRevocationList.isLoaded()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should revoke tokens of disabled users")
+    void shouldRevokeDisabledUsers() {
+        // Given
+        when(userRepository.findDisabledEmails()).thenReturn(List.of("disabled@example.com"));
+        when(userRepository.findEmailsByRole(UserRole.ADMIN)).thenReturn(List.of());
+
+        // When
+        tokenRevocationList.refresh();
+
+        // Then
+        assertThat(tokenRevocationList.isRevoked("disabled@example.com")).isTrue();
+        assertThat(tokenRevocationList.isRevoked("jan@example.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should revoke the admin role of users who are no longer admins")
+    void shouldRevokeAdminRoleOfDemotedUsers() {
+        // Given
+        when(userRepository.findDisabledEmails()).thenReturn(List.of());
+        when(userRepository.findEmailsByRole(UserRole.ADMIN)).thenReturn(List.of("admin@example.com"));
+
+        // When
+        tokenRevocationList.refresh();
+
+        // Then
+        assertThat(tokenRevocationList.hasRevokedRole("admin@example.com",
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN"))).isFalse();
+        assertThat(tokenRevocationList.hasRevokedRole("demoted@example.com",
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN"))).isTrue();
+        assertThat(tokenRevocationList.hasRevokedRole("demoted@example.com",
+                AuthorityUtils.createAuthorityList("ROLE_USER"))).isFalse();
+    }
+}
@@ -1,12 +1,18 @@
 package pl.aeh.currencyexchange.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import pl.aeh.currencyexchange.client.NbpClient;
 import pl.aeh.currencyexchange.dto.ExchangeRateDto;
 import pl.aeh.currencyexchange.dto.nbp.NbpRateDto;
@@ -16,13 +22,22 @@ import pl.aeh.currencyexchange.repository.ExchangeRateRepository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +49,18 @@ class ExchangeRateServiceTest {
     @Mock
     private ExchangeRateRepository exchangeRateRepository;
 
+    @Spy
+    private RateSnapshotStore rateSnapshotStore = new RateSnapshotStore();
+
+    @Spy
+    private RateHistoryStore rateHistoryStore = new RateHistoryStore();
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private ExchangeRateService exchangeRateService;
 
@@ -60,6 +87,9 @@ class ExchangeRateServiceTest {
                 .bid(new BigDecimal("4.0"))
                 .ask(new BigDecimal("4.2"))
                 .build();
+
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
@@ -67,8 +97,8 @@ class ExchangeRateServiceTest {
     void shouldFetchCurrentRatesFromNbpAndSave() {
         // Given
         when(nbpClient.fetchCurrentRates()).thenReturn(nbpTableDto);
-        when(exchangeRateRepository.existsByCurrencyAndRateDate(anyString(), any(LocalDate.class))).thenReturn(false);
-        when(exchangeRateRepository.save(any(ExchangeRate.class))).thenReturn(exchangeRate);
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
+        when(exchangeRateRepository.findAllByRateDate(any(LocalDate.class))).thenReturn(Collections.singletonList(exchangeRate));
 
         // When
         List<ExchangeRateDto> result = exchangeRateService.fetchCurrentRates();
@@ -76,7 +106,9 @@ class ExchangeRateServiceTest {
         // Then
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getCode()).isEqualTo("USD");
-        verify(exchangeRateRepository).save(any(ExchangeRate.class));
+        verify(exchangeRateRepository).upsertAll(argThat(rates -> rates.size() == 1
+                && rates.get(0).getCurrency().equals("USD")));
+        verify(exchangeRateRepository, never()).save(any(ExchangeRate.class));
     }
 
     @Test
@@ -84,16 +116,17 @@ class ExchangeRateServiceTest {
     void shouldUseExistingRatesIfPresent() {
         // Given
         when(nbpClient.fetchCurrentRates()).thenReturn(nbpTableDto);
-        when(exchangeRateRepository.existsByCurrencyAndRateDate(anyString(), any(LocalDate.class))).thenReturn(true);
-        when(exchangeRateRepository.findByCurrencyAndRateDate(anyString(), any(LocalDate.class)))
-                .thenReturn(Optional.of(exchangeRate));
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(0);
+        when(exchangeRateRepository.findAllByRateDate(any(LocalDate.class))).thenReturn(Collections.singletonList(exchangeRate));
 
         // When
         List<ExchangeRateDto> result = exchangeRateService.fetchCurrentRates();
 
         // Then
         assertThat(result).hasSize(1);
+        assertThat(result.get(0).getId()).isEqualTo(1L);
         verify(exchangeRateRepository, never()).save(any(ExchangeRate.class));
+        verify(exchangeRateRepository, never()).existsByCurrencyAndRateDate(anyString(), any(LocalDate.class));
     }
 
     @Test
@@ -109,6 +142,24 @@ class ExchangeRateServiceTest {
         // Then
         assertThat(result).hasSize(1);
         verify(exchangeRateRepository).findAllLatest();
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    @DisplayName("Should call NBP before opening the write transaction")
+    void shouldFetchFromNbpOutsideTransaction() {
+        // Given
+        when(nbpClient.fetchCurrentRates()).thenReturn(nbpTableDto);
+        when(exchangeRateRepository.findAllByRateDate(any(LocalDate.class))).thenReturn(Collections.singletonList(exchangeRate));
+
+        // When
+        exchangeRateService.loadCurrentRates();
+
+        // Then
+        InOrder inOrder = inOrder(nbpClient, transactionTemplate, exchangeRateRepository);
+        inOrder.verify(nbpClient).fetchCurrentRates();
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(exchangeRateRepository).upsertAll(anyList());
     }
 
     @Test
@@ -131,9 +182,10 @@ class ExchangeRateServiceTest {
     void shouldFetchRatesByDateFromNbp() {
         // Given
         LocalDate date = LocalDate.now();
-        when(exchangeRateRepository.findAllByRateDate(date)).thenReturn(Collections.emptyList());
+        when(exchangeRateRepository.findAllByRateDate(date))
+                .thenReturn(Collections.emptyList(), Collections.singletonList(exchangeRate));
         when(nbpClient.fetchRatesByDate(date)).thenReturn(nbpTableDto);
-        when(exchangeRateRepository.save(any(ExchangeRate.class))).thenReturn(exchangeRate);
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
 
         // When
         List<ExchangeRateDto> result = exchangeRateService.fetchRatesByDate(date);
@@ -141,6 +193,195 @@ class ExchangeRateServiceTest {
         // Then
         assertThat(result).hasSize(1);
         verify(nbpClient).fetchRatesByDate(date);
-        verify(exchangeRateRepository).save(any(ExchangeRate.class));
+        verify(exchangeRateRepository).upsertAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should serve current rate from snapshot after a table is persisted")
+    void shouldServeCurrentRateFromSnapshot() {
+        // Given
+        when(nbpClient.fetchCurrentRates()).thenReturn(nbpTableDto);
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
+        when(exchangeRateRepository.findAllByRateDate(any(LocalDate.class))).thenReturn(Collections.singletonList(exchangeRate));
+        exchangeRateService.fetchCurrentRates();
+
+        // When
+        ExchangeRateDto result = exchangeRateService.getCurrentRate("USD");
+
+        // Then
+        assertThat(result.getAsk()).isEqualByComparingTo("4.2");
+        assertThat(rateSnapshotStore.current().getVersion()).isEqualTo(1L);
+        verify(exchangeRateRepository, never()).findLatestByCurrency(anyString());
+    }
+
+    @Test
+    @DisplayName("Should load current rate from DB on snapshot miss and publish it")
+    void shouldLoadCurrentRateFromDbOnSnapshotMiss() {
+        // Given
+        when(exchangeRateRepository.findLatestByCurrency("USD")).thenReturn(Optional.of(exchangeRate));
+
+        // When
+        exchangeRateService.getCurrentRate("USD");
+        exchangeRateService.getCurrentRate("USD");
+
+        // Then
+        verify(exchangeRateRepository, times(1)).findLatestByCurrency("USD");
+        assertThat(rateSnapshotStore.current().get("USD")).isNotNull();
+        assertThat(meterRegistry.get("rates.current.lookup").tag("source", "db").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("rates.current.lookup").tag("source", "snapshot").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not roll snapshot back when an older table is persisted")
+    void shouldNotRollSnapshotBackForOlderTable() {
+        // Given
+        rateSnapshotStore.publish(List.of(ExchangeRateDto.builder()
+                .code("USD").bid(new BigDecimal("4.1")).ask(new BigDecimal("4.3"))
+                .rateDate(LocalDate.now()).build()));
+
+        // When
+        rateSnapshotStore.publish(List.of(ExchangeRateDto.builder()
+                .code("USD").bid(new BigDecimal("3.9")).ask(new BigDecimal("4.0"))
+                .rateDate(LocalDate.now().minusDays(7)).build()));
+
+        // Then
+        assertThat(rateSnapshotStore.current().get("USD").getBid()).isEqualByComparingTo("4.1");
+        assertThat(rateSnapshotStore.current().getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Should compute cross rates once per snapshot as bid of source over ask of target")
+    void shouldComputeCrossRatesPerSnapshot() {
+        // Given
+        rateSnapshotStore.publish(List.of(
+                ExchangeRateDto.builder().code("USD").bid(new BigDecimal("4.0000")).ask(new BigDecimal("4.2000"))
+                        .rateDate(LocalDate.now()).build(),
+                ExchangeRateDto.builder().code("EUR").bid(new BigDecimal("4.3000")).ask(new BigDecimal("4.4000"))
+                        .rateDate(LocalDate.now()).build()));
+
+        // When
+        CrossRateMatrix crossRates = exchangeRateService.getCrossRates("USD", "EUR");
+
+        // Then
+        assertThat(crossRates.getCurrencies()).containsExactly("EUR", "USD");
+        assertThat(crossRates.rate(crossRates.ordinal("USD"), crossRates.ordinal("EUR")))
+                .isEqualByComparingTo("0.909091");
+        assertThat(crossRates.rate(crossRates.ordinal("EUR"), crossRates.ordinal("USD")))
+                .isEqualByComparingTo("1.023810");
+        assertThat(exchangeRateService.getCrossRates("EUR", "USD")).isSameAs(crossRates);
+        verifyNoInteractions(exchangeRateRepository);
+    }
+
+    @Test
+    @DisplayName("Should serve PLN exchanges from the snapshot cross rates")
+    void shouldServePlnCrossRatesFromSnapshot() {
+        // Given
+        rateSnapshotStore.publish(List.of(ExchangeRateDto.builder()
+                .code("USD").bid(new BigDecimal("3.9000")).ask(new BigDecimal("4.0000"))
+                .rateDate(LocalDate.now()).build()));
+
+        // When
+        CrossRateMatrix crossRates = exchangeRateService.getCrossRates("PLN", "USD");
+
+        // Then
+        assertThat(crossRates.ask(crossRates.ordinal("USD"))).isEqualTo(new BigDecimal("4.0000"));
+        assertThat(crossRates.scaledAsk(crossRates.ordinal("USD"))).isEqualTo(4_000_000L);
+        assertThat(exchangeRateService.getCrossRates("USD", "PLN")).isSameAs(crossRates);
+        verifyNoInteractions(exchangeRateRepository);
+    }
+
+    @Test
+    @DisplayName("Should serve rate history from the columnar store once loaded")
+    void shouldServeRateHistoryFromStore() {
+        // Given
+        LocalDate today = LocalDate.now();
+        rateHistoryStore.load(List.of(
+                ExchangeRateDto.builder().id(1L).code("USD").bid(new BigDecimal("4.0001")).ask(new BigDecimal("4.0004"))
+                        .rateDate(today.minusDays(2)).build(),
+                ExchangeRateDto.builder().id(2L).code("USD").bid(new BigDecimal("4.1")).ask(new BigDecimal("4.3"))
+                        .rateDate(today).build()));
+        rateHistoryStore.append(List.of(
+                ExchangeRateDto.builder().id(3L).code("USD").bid(new BigDecimal("4.05")).ask(new BigDecimal("4.25"))
+                        .rateDate(today.minusDays(1)).build()));
+
+        // When
+        List<ExchangeRateDto> result = exchangeRateService.getRateHistory("USD", today.minusDays(2), today.minusDays(1));
+
+        // Then
+        assertThat(result).extracting(ExchangeRateDto::getId).containsExactly(1L, 3L);
+        assertThat(result.get(0).getMidRate()).isEqualTo(new BigDecimal("4.000250"));
+        assertThat(result.get(0).getBid()).isEqualTo(new BigDecimal("4.000100"));
+        verifyNoInteractions(exchangeRateRepository);
+    }
+
+    @Test
+    @DisplayName("Should coalesce concurrent current-rate loads into one NBP call")
+    void shouldCoalesceConcurrentLoads() throws Exception {
+        // Given
+        CountDownLatch nbpCalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(nbpClient.fetchCurrentRates()).thenAnswer(inv -> {
+            nbpCalled.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return nbpTableDto;
+        });
+        when(exchangeRateRepository.findAllByRateDate(any(LocalDate.class))).thenReturn(Collections.singletonList(exchangeRate));
+
+        // When
+        List<List<ExchangeRateDto>> results = loadConcurrently(nbpCalled, release);
+
+        // Then
+        assertThat(results).hasSize(8).allSatisfy(rates -> assertThat(rates).hasSize(1));
+        verify(nbpClient, times(1)).fetchCurrentRates();
+        verify(exchangeRateRepository, times(1)).upsertAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should share the DB fallback between concurrent loads when NBP fails")
+    void shouldCoalesceConcurrentFallbacks() throws Exception {
+        // Given
+        CountDownLatch nbpCalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(nbpClient.fetchCurrentRates()).thenAnswer(inv -> {
+            nbpCalled.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            throw new RuntimeException("NBP down");
+        });
+        when(exchangeRateRepository.findAllLatest()).thenReturn(Collections.singletonList(exchangeRate));
+
+        // When
+        List<List<ExchangeRateDto>> results = loadConcurrently(nbpCalled, release);
+
+        // Then
+        assertThat(results).hasSize(8).allSatisfy(rates -> assertThat(rates).hasSize(1));
+        verify(nbpClient, times(1)).fetchCurrentRates();
+        verify(exchangeRateRepository, times(1)).findAllLatest();
+    }
+
+    /**
+     * Start one load, wait until it is inside NBP, pile up seven more and then let NBP answer
+     */
+    private List<List<ExchangeRateDto>> loadConcurrently(CountDownLatch nbpCalled, CountDownLatch release) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            CompletableFuture<List<ExchangeRateDto>> leader =
+                    CompletableFuture.supplyAsync(exchangeRateService::loadCurrentRates, callers);
+            assertThat(nbpCalled.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<CompletableFuture<List<ExchangeRateDto>>> followers = IntStream.range(0, 7)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(exchangeRateService::loadCurrentRates, callers))
+                    .toList();
+            Thread.sleep(200);
+            release.countDown();
+
+            List<List<ExchangeRateDto>> results = new ArrayList<>();
+            results.add(leader.get(5, TimeUnit.SECONDS));
+            for (CompletableFuture<List<ExchangeRateDto>> follower : followers) {
+                results.add(follower.get(5, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            callers.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,123 @@
+package pl.aeh.currencyexchange.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointTest {
+
+    private static final int SAMPLES = 100_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    @DisplayName("Should match BigDecimal when buying a currency for PLN")
+    void shouldMatchBigDecimalDivideByRate() {
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal amount = randomAmount();
+            BigDecimal ask = randomRate();
+
+            BigDecimal expected = amount.divide(ask, 4, RoundingMode.HALF_UP);
+            BigDecimal actual = FixedPoint.toAmount(FixedPoint.divideByRate(scaledAmount(amount), scaledRate(ask)));
+
+            assertThat(actual).as("%s / %s", amount, ask).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Should match BigDecimal when selling a currency for PLN")
+    void shouldMatchBigDecimalMultiplyByRate() {
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal amount = randomAmount();
+            BigDecimal bid = randomRate();
+
+            BigDecimal expected = amount.multiply(bid).setScale(4, RoundingMode.HALF_UP);
+            BigDecimal actual = FixedPoint.toAmount(FixedPoint.multiplyByRate(scaledAmount(amount), scaledRate(bid)));
+
+            assertThat(actual).as("%s * %s", amount, bid).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Should match BigDecimal for cross exchanges and their effective rate")
+    void shouldMatchBigDecimalCrossConvert() {
+        for (int i = 0; i < SAMPLES; i++) {
+            BigDecimal amount = randomAmount();
+            BigDecimal bid = randomRate();
+            BigDecimal ask = randomRate();
+
+            BigDecimal expectedTarget = amount.multiply(bid).divide(ask, 4, RoundingMode.HALF_UP);
+            BigDecimal expectedRate = expectedTarget.divide(amount, 6, RoundingMode.HALF_UP);
+            long target = FixedPoint.crossConvert(scaledAmount(amount), scaledRate(bid), scaledRate(ask));
+            long rate = FixedPoint.effectiveRate(target, scaledAmount(amount));
+
+            assertThat(FixedPoint.toAmount(target)).as("%s * %s / %s", amount, bid, ask).isEqualTo(expectedTarget);
+            assertThat(FixedPoint.toRate(rate)).as("rate of %s for %s", expectedTarget, amount).isEqualTo(expectedRate);
+        }
+    }
+
+    @Test
+    @DisplayName("Should round half away from zero")
+    void shouldRoundHalfUp() {
+        assertThat(FixedPoint.divideHalfUp(5, 2)).isEqualTo(3);
+        assertThat(FixedPoint.divideHalfUp(-5, 2)).isEqualTo(-3);
+        assertThat(FixedPoint.divideHalfUp(7, 3)).isEqualTo(2);
+        assertThat(FixedPoint.divideHalfUp(-7, 3)).isEqualTo(-2);
+        assertThat(FixedPoint.divideHalfUp(5, -2)).isEqualTo(-3);
+    }
+
+    @Test
+    @DisplayName("Should reject values that do not fit the fixed-point scales")
+    void shouldRejectUnrepresentableValues() {
+        assertThatThrownBy(() -> FixedPoint.toScaled(new BigDecimal("1.00005"), FixedPoint.AMOUNT_SCALE))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FixedPoint.toScaled(new BigDecimal("1e20"), FixedPoint.AMOUNT_SCALE))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FixedPoint.multiplyByRate(Long.MAX_VALUE / 2, 4_000_000L))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    @DisplayName("Should tell up front which values and products fit the fixed-point scales")
+    void shouldCheckRepresentability() {
+        assertThat(FixedPoint.isAmount(new BigDecimal("100.0001"))).isTrue();
+        assertThat(FixedPoint.isAmount(new BigDecimal("1e2"))).isTrue();
+        assertThat(FixedPoint.isAmount(new BigDecimal("1.00005"))).isFalse();
+        assertThat(FixedPoint.isAmount(new BigDecimal("1e20"))).isFalse();
+        assertThat(FixedPoint.fitsProduct(1_000_000_000L, 4_000_000L)).isTrue();
+        assertThat(FixedPoint.fitsProduct(-Long.MAX_VALUE / 4_000_000L, 4_000_000L)).isTrue();
+        assertThat(FixedPoint.fitsProduct(Long.MAX_VALUE / 2, 4_000_000L)).isFalse();
+    }
+
+    /**
+     * Amount between 0.0001 and 100 000 with 0 to 4 decimals
+     */
+    private BigDecimal randomAmount() {
+        int scale = random.nextInt(5);
+        long bound = 100_000L * (long) Math.pow(10, scale);
+        return BigDecimal.valueOf(1 + (long) (random.nextDouble() * bound), scale);
+    }
+
+    /**
+     * Rate between 0.01 and 10 with 4 to 6 decimals, the span of NBP table C
+     */
+    private BigDecimal randomRate() {
+        int scale = 4 + random.nextInt(3);
+        long unit = (long) Math.pow(10, scale);
+        return BigDecimal.valueOf(unit / 100 + (long) (random.nextDouble() * 10 * unit), scale);
+    }
+
+    private static long scaledAmount(BigDecimal amount) {
+        return FixedPoint.toScaled(amount, FixedPoint.AMOUNT_SCALE);
+    }
+
+    private static long scaledRate(BigDecimal rate) {
+        return FixedPoint.toScaled(rate, FixedPoint.RATE_SCALE);
+    }
+}
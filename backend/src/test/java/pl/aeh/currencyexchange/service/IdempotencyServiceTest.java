@@ -0,0 +1,204 @@
+package pl.aeh.currencyexchange.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.aeh.currencyexchange.dto.TopUpDto;
+import pl.aeh.currencyexchange.dto.WalletDto;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.model.IdempotencyKey;
+import pl.aeh.currencyexchange.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final String EMAIL = "test@example.com";
+    private static final String KEY = "4f1c2a9e-retry";
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private IdempotencyService idempotencyService;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, new ObjectMapper());
+        idempotencyService.init();
+    }
+
+    @Test
+    @DisplayName("Should run the operation once and replay its response from memory")
+    void shouldReplayStoredResponse() {
+        // Given
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY)).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.record(eq(EMAIL), eq(KEY), eq("topup"), anyString(), anyString())).thenReturn(true);
+
+        // When
+        WalletDto first = topUp(new BigDecimal("100.00"));
+        WalletDto retry = topUp(new BigDecimal("100.00"));
+
+        // Then
+        assertThat(runs).hasValue(1);
+        assertThat(retry).isEqualTo(first);
+        verify(idempotencyKeyRepository, times(1)).findByUserEmailAndKey(any(), any());
+        verify(idempotencyKeyRepository, times(1)).record(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should replay a response recorded by another instance")
+    void shouldReplayResponseFromDatabase() {
+        // Given
+        AtomicReference<String> requestHash = recordingSucceeds();
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(completed(requestHash.get(), 7L)));
+        topUp(new BigDecimal("100.00"));
+
+        IdempotencyService otherInstance = new IdempotencyService(idempotencyKeyRepository, new ObjectMapper());
+        otherInstance.init();
+
+        // When
+        WalletDto retry = otherInstance.execute(EMAIL, KEY, "topup", topUpDto(new BigDecimal("100.00")),
+                WalletDto.class, recordResponse -> recordResponse.apply(credit()));
+
+        // Then
+        assertThat(runs).hasValue(1);
+        assertThat(retry.getId()).isEqualTo(7L);
+        assertThat(retry.getBalance()).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    @DisplayName("Should reject a retry while the first request is still running on this instance")
+    void shouldRejectRetryInProgress() {
+        // Given
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> idempotencyService.execute(EMAIL, KEY, "topup", topUpDto(new BigDecimal("100.00")),
+                WalletDto.class, recordResponse -> topUp(new BigDecimal("100.00"))))
+                .isInstanceOf(ConflictException.class);
+        assertThat(runs).hasValue(0);
+        verify(idempotencyKeyRepository, never()).record(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should reject a key reused for a different request")
+    void shouldRejectKeyReusedForDifferentRequest() {
+        // Given
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY)).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.record(eq(EMAIL), eq(KEY), eq("topup"), anyString(), anyString())).thenReturn(true);
+        topUp(new BigDecimal("100.00"));
+
+        // When & Then
+        assertThatThrownBy(() -> topUp(new BigDecimal("250.00")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("different request");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should record nothing when the operation fails, so a retry runs it again")
+    void shouldNotRecordFailedOperation() {
+        // Given
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY)).thenReturn(Optional.empty());
+        when(idempotencyKeyRepository.record(eq(EMAIL), eq(KEY), eq("topup"), anyString(), anyString())).thenReturn(true);
+
+        // When
+        assertThatThrownBy(() -> idempotencyService.execute(EMAIL, KEY, "topup", topUpDto(new BigDecimal("100.00")),
+                WalletDto.class, recordResponse -> {
+                    throw new IllegalArgumentException("Amount must be positive");
+                })).isInstanceOf(IllegalArgumentException.class);
+        topUp(new BigDecimal("100.00"));
+
+        // Then
+        assertThat(runs).hasValue(1);
+        verify(idempotencyKeyRepository, times(1)).record(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should roll back and replay the first response when another instance recorded the key first")
+    void shouldReplayWhenKeyTakenConcurrently() {
+        // Given
+        AtomicReference<String> requestHash = new AtomicReference<>();
+        when(idempotencyKeyRepository.record(eq(EMAIL), eq(KEY), eq("topup"), anyString(), anyString())).thenAnswer(invocation -> {
+            requestHash.set(invocation.getArgument(3));
+            return false;
+        });
+        when(idempotencyKeyRepository.findByUserEmailAndKey(EMAIL, KEY))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(completed(requestHash.get(), 9L)));
+
+        // When
+        WalletDto response = topUp(new BigDecimal("100.00"));
+
+        // Then
+        assertThat(response.getId()).isEqualTo(9L);
+    }
+
+    @Test
+    @DisplayName("Should run the operation without a key")
+    void shouldRunWithoutKey() {
+        // When
+        idempotencyService.execute(EMAIL, null, "topup", topUpDto(BigDecimal.ONE), WalletDto.class,
+                recordResponse -> recordResponse.apply(credit()));
+        idempotencyService.execute(EMAIL, null, "topup", topUpDto(BigDecimal.ONE), WalletDto.class,
+                recordResponse -> recordResponse.apply(credit()));
+
+        // Then
+        assertThat(runs).hasValue(2);
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    private WalletDto topUp(BigDecimal amount) {
+        return idempotencyService.execute(EMAIL, KEY, "topup", topUpDto(amount), WalletDto.class,
+                recordResponse -> recordResponse.apply(credit()));
+    }
+
+    private AtomicReference<String> recordingSucceeds() {
+        AtomicReference<String> requestHash = new AtomicReference<>();
+        when(idempotencyKeyRepository.record(eq(EMAIL), eq(KEY), eq("topup"), anyString(), anyString())).thenAnswer(invocation -> {
+            requestHash.set(invocation.getArgument(3));
+            return true;
+        });
+        return requestHash;
+    }
+
+    private static IdempotencyKey completed(String requestHash, Long walletId) {
+        return IdempotencyKey.builder()
+                .requestHash(requestHash)
+                .responseBody("{\"id\":" + walletId + ",\"currency\":\"PLN\",\"balance\":100.00}")
+                .build();
+    }
+
+    private WalletDto credit() {
+        runs.incrementAndGet();
+        return WalletDto.builder().id(7L).currency("PLN").balance(new BigDecimal("100.00")).build();
+    }
+
+    private static TopUpDto topUpDto(BigDecimal amount) {
+        TopUpDto dto = new TopUpDto();
+        dto.setAmount(amount);
+        return dto;
+    }
+}
@@ -0,0 +1,259 @@
+package pl.aeh.currencyexchange.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.client.NbpClient;
+import pl.aeh.currencyexchange.dto.BackfillResultDto;
+import pl.aeh.currencyexchange.dto.nbp.NbpRateDto;
+import pl.aeh.currencyexchange.dto.nbp.NbpTableDto;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
+import pl.aeh.currencyexchange.model.RateBackfillCheckpoint;
+import pl.aeh.currencyexchange.repository.ExchangeRateRepository;
+import pl.aeh.currencyexchange.repository.RateBackfillCheckpointRepository;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateBackfillServiceTest {
+
+    private static final ZoneId WARSAW = ZoneId.of("Europe/Warsaw");
+
+    @Mock
+    private NbpClient nbpClient;
+
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Mock
+    private RateBackfillCheckpointRepository checkpointRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private RateHistoryStore rateHistoryStore = new RateHistoryStore();
+
+    @InjectMocks
+    private RateBackfillService rateBackfillService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rateBackfillService, "concurrency", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateBackfillService.stop();
+    }
+
+    @Test
+    @DisplayName("Should split range into quarter-aligned chunks within NBP limit")
+    void shouldSplitRangeIntoQuarterAlignedChunks() {
+        // When
+        List<RateBackfillService.DateRange> chunks =
+                RateBackfillService.splitIntoChunks(LocalDate.of(2023, 2, 15), LocalDate.of(2023, 12, 1));
+
+        // Then
+        assertThat(chunks).extracting(RateBackfillService.DateRange::start).containsExactly(
+                LocalDate.of(2023, 2, 15), LocalDate.of(2023, 4, 1),
+                LocalDate.of(2023, 7, 1), LocalDate.of(2023, 10, 1));
+        assertThat(chunks).extracting(RateBackfillService.DateRange::end).containsExactly(
+                LocalDate.of(2023, 3, 31), LocalDate.of(2023, 6, 30),
+                LocalDate.of(2023, 9, 30), LocalDate.of(2023, 12, 1));
+        assertThat(chunks).allMatch(chunk -> chunk.end().toEpochDay() - chunk.start().toEpochDay() < NbpClient.MAX_RANGE_DAYS);
+    }
+
+    @Test
+    @DisplayName("Should skip checkpointed chunks and store the remaining ones")
+    void shouldResumeFromCheckpoints() {
+        // Given
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 6, 30);
+        when(checkpointRepository.findAllOverlapping(from, to)).thenReturn(List.of(RateBackfillCheckpoint.builder()
+                .chunkStart(LocalDate.of(2024, 1, 1)).chunkEnd(LocalDate.of(2024, 3, 31)).build()));
+        when(nbpClient.fetchRatesBetween(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 6, 30)))
+                .thenReturn(List.of(table(LocalDate.of(2024, 4, 2)), table(LocalDate.of(2024, 4, 3))));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(2);
+        when(checkpointRepository.save(any(RateBackfillCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        BackfillResultDto result = rateBackfillService.backfill(from, to);
+
+        // Then
+        assertThat(result.getChunks()).isEqualTo(2);
+        assertThat(result.getSkippedChunks()).isEqualTo(1);
+        assertThat(result.getTables()).isEqualTo(2);
+        assertThat(result.getInsertedRates()).isEqualTo(2);
+        verify(nbpClient, never()).fetchRatesBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        verify(exchangeRateRepository).upsertAll(argThat(rates -> rates.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Should checkpoint chunks without published tables")
+    void shouldCheckpointEmptyChunks() {
+        // Given
+        LocalDate day = LocalDate.of(2024, 12, 25);
+        when(checkpointRepository.findAllOverlapping(day, day)).thenReturn(Collections.emptyList());
+        when(nbpClient.fetchRatesBetween(day, day)).thenThrow(new ResourceNotFoundException("Not found"));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(checkpointRepository.save(any(RateBackfillCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        BackfillResultDto result = rateBackfillService.backfill(day, day);
+
+        // Then
+        assertThat(result.getTables()).isZero();
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getChunkStart().equals(day)));
+    }
+
+    @Test
+    @DisplayName("Should clamp the end date to yesterday before today's publication")
+    void shouldClampEndDateBeforePublication() {
+        // Given
+        useClock(ZonedDateTime.of(2024, 5, 15, 7, 30, 0, 0, WARSAW));
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate yesterday = LocalDate.of(2024, 5, 14);
+        when(checkpointRepository.findAllOverlapping(from, yesterday)).thenReturn(Collections.emptyList());
+        when(nbpClient.fetchRatesBetween(from, yesterday)).thenReturn(List.of(table(LocalDate.of(2024, 5, 14))));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
+        when(checkpointRepository.save(any(RateBackfillCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        BackfillResultDto result = rateBackfillService.backfill(from, LocalDate.of(2024, 6, 30));
+
+        // Then
+        assertThat(result.getTo()).isEqualTo(yesterday);
+        verify(nbpClient).fetchRatesBetween(from, yesterday);
+        verify(checkpointRepository).save(argThat(checkpoint -> checkpoint.getChunkEnd().equals(yesterday)));
+    }
+
+    @Test
+    @DisplayName("Should store a chunk ending today without checkpointing it")
+    void shouldNotCheckpointChunkEndingToday() {
+        // Given
+        useClock(ZonedDateTime.of(2024, 5, 15, 9, 0, 0, 0, WARSAW));
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate today = LocalDate.of(2024, 5, 15);
+        when(checkpointRepository.findAllOverlapping(from, today)).thenReturn(Collections.emptyList());
+        when(nbpClient.fetchRatesBetween(from, today)).thenReturn(List.of(table(LocalDate.of(2024, 5, 14))));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
+
+        // When
+        BackfillResultDto result = rateBackfillService.backfill(from, LocalDate.of(2024, 6, 30));
+
+        // Then
+        assertThat(result.getTo()).isEqualTo(today);
+        assertThat(result.getInsertedRates()).isEqualTo(1);
+        verify(exchangeRateRepository).upsertAll(anyList());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should reject a range starting after the last published date")
+    void shouldRejectRangeAfterLastPublishedDate() {
+        // Given
+        useClock(ZonedDateTime.of(2024, 5, 15, 7, 30, 0, 0, WARSAW));
+
+        // When & Then
+        assertThatThrownBy(() -> rateBackfillService.backfill(LocalDate.of(2024, 5, 15), LocalDate.of(2024, 5, 20)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("2024-05-14");
+        verifyNoInteractions(nbpClient, checkpointRepository);
+    }
+
+    @Test
+    @DisplayName("Should start the backfill in the background and report its progress")
+    void shouldStartBackfillInBackground() throws Exception {
+        // Given
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 3, 31);
+        CountDownLatch release = new CountDownLatch(1);
+        when(checkpointRepository.findAllOverlapping(from, to)).thenReturn(Collections.emptyList());
+        when(nbpClient.fetchRatesBetween(from, to)).thenAnswer(invocation -> {
+            assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+            return List.of(table(LocalDate.of(2024, 1, 2)));
+        });
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(exchangeRateRepository.upsertAll(anyList())).thenReturn(1);
+        when(checkpointRepository.save(any(RateBackfillCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        BackfillResultDto started = rateBackfillService.start(from, to);
+
+        // Then
+        assertThat(started.getStatus()).isEqualTo(BackfillResultDto.Status.RUNNING);
+        assertThat(started.getChunks()).isEqualTo(1);
+        assertThat(started.getCompletedChunks()).isZero();
+        assertThatThrownBy(() -> rateBackfillService.start(from, to))
+                .isInstanceOf(ConflictException.class);
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (rateBackfillService.progress().getStatus() == BackfillResultDto.Status.RUNNING
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        BackfillResultDto finished = rateBackfillService.progress();
+        assertThat(finished.getStatus()).isEqualTo(BackfillResultDto.Status.COMPLETED);
+        assertThat(finished.getCompletedChunks()).isEqualTo(1);
+        assertThat(finished.getInsertedRates()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should report that no backfill has been started")
+    void shouldRejectProgressBeforeFirstBackfill() {
+        // When & Then
+        assertThatThrownBy(() -> rateBackfillService.progress())
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private void useClock(ZonedDateTime now) {
+        ReflectionTestUtils.setField(rateBackfillService, "clock", Clock.fixed(now.toInstant(), WARSAW));
+    }
+
+    private NbpTableDto table(LocalDate effectiveDate) {
+        NbpRateDto rate = new NbpRateDto();
+        rate.setCode("USD");
+        rate.setCurrency("dolar amerykański");
+        rate.setBid(new BigDecimal("4.0"));
+        rate.setAsk(new BigDecimal("4.2"));
+
+        NbpTableDto table = new NbpTableDto();
+        table.setEffectiveDate(effectiveDate);
+        table.setRates(Collections.singletonList(rate));
+        return table;
+    }
+}
@@ -0,0 +1,85 @@
+package pl.aeh.currencyexchange.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WalletGroupCommitterTest {
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private WalletGroupCommitter walletGroupCommitter;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        ReflectionTestUtils.setField(walletGroupCommitter, "enabled", true);
+        ReflectionTestUtils.setField(walletGroupCommitter, "committers", 1);
+        ReflectionTestUtils.setField(walletGroupCommitter, "maxSize", 3);
+        ReflectionTestUtils.setField(walletGroupCommitter, "maxDelayMillis", 2_000L);
+        walletGroupCommitter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletGroupCommitter.stop();
+        callers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should commit concurrent operations in one shared transaction")
+    void shouldCommitOperationsTogether() {
+        // When
+        List<CompletableFuture<Integer>> results = List.of(1, 2, 3).stream()
+                .map(value -> CompletableFuture.supplyAsync(() -> walletGroupCommitter.execute(() -> value * 10), callers))
+                .toList();
+
+        // Then
+        assertThat(results.stream().map(CompletableFuture::join)).containsExactlyInAnyOrder(10, 20, 30);
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Should fall back to one transaction per operation when the group fails")
+    void shouldIsolateFailingOperation() {
+        // When
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> walletGroupCommitter.execute(() -> "ok"), callers);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> walletGroupCommitter.execute(() -> {
+            throw new IllegalArgumentException("Insufficient funds in PLN wallet");
+        }), callers);
+        CompletableFuture<String> third = CompletableFuture.supplyAsync(() -> walletGroupCommitter.execute(() -> "ok"), callers);
+
+        // Then
+        assertThat(first.join()).isEqualTo("ok");
+        assertThat(third.join()).isEqualTo("ok");
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalArgumentException.class);
+        verify(transactionTemplate, times(4)).executeWithoutResult(any());
+    }
+}
@@ -0,0 +1,219 @@
+package pl.aeh.currencyexchange.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.aeh.currencyexchange.dto.ExchangeRateDto;
+import pl.aeh.currencyexchange.dto.ExchangeRequestDto;
+import pl.aeh.currencyexchange.exception.ResourceNotFoundException;
+import pl.aeh.currencyexchange.model.Transaction;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.Wallet;
+import pl.aeh.currencyexchange.repository.TransactionRepository;
+import pl.aeh.currencyexchange.repository.UserRepository;
+import pl.aeh.currencyexchange.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletServiceTest {
+
+    private static final String EMAIL = "test@example.com";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private ExchangeRateService exchangeRateService;
+
+    @Mock
+    private WalletTransactionExecutor walletTransactionExecutor;
+
+    @Mock
+    private WalletWriterLanes walletWriterLanes;
+
+    @InjectMocks
+    private WalletService walletService;
+
+    @BeforeEach
+    void setUp() {
+        when(walletTransactionExecutor.getMode()).thenReturn(WalletConcurrencyMode.ATOMIC);
+        when(walletTransactionExecutor.execute(anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
+    @Test
+    @DisplayName("Should exchange with one atomic transfer at the quoted amount")
+    void shouldExchangeAtomically() {
+        // Given
+        usdRate();
+        Transaction ledger = Transaction.builder().id(42L).build();
+        when(walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("100.00"), "USD",
+                new BigDecimal("25.0000"), new BigDecimal("4.0000"), "Exchange PLN to USD"))
+                .thenReturn(Optional.of(ledger));
+
+        // When
+        Transaction result = walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00"));
+
+        // Then
+        assertThat(result).isSameAs(ledger);
+        verify(walletTransactionExecutor).execute(eq("exchange"), any());
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    @DisplayName("Should price the exchange before entering the wallet transaction")
+    void shouldQuoteOutsideTransaction() {
+        // Given
+        usdRate();
+        when(walletRepository.transferAtomically(eq(EMAIL), eq("PLN"), any(), eq("USD"), any(), any(), anyString()))
+                .thenReturn(Optional.of(Transaction.builder().id(42L).build()));
+
+        // When
+        walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00"));
+
+        // Then
+        InOrder inOrder = inOrder(exchangeRateService, walletTransactionExecutor, walletRepository);
+        inOrder.verify(exchangeRateService).getCrossRates("PLN", "USD");
+        inOrder.verify(walletTransactionExecutor).execute(eq("exchange"), any());
+        inOrder.verify(walletRepository).transferAtomically(eq(EMAIL), eq("PLN"), any(), eq("USD"), any(), any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Should price an amount beyond the fixed-point scale with BigDecimal from the same rates")
+    void shouldQuoteExactlyFromOneLookup() {
+        // Given
+        usdRate();
+        Transaction ledger = Transaction.builder().id(42L).build();
+        when(walletRepository.transferAtomically(EMAIL, "PLN", new BigDecimal("100.00005"), "USD",
+                new BigDecimal("25.0000"), new BigDecimal("4.0000"), "Exchange PLN to USD"))
+                .thenReturn(Optional.of(ledger));
+
+        // When
+        Transaction result = walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00005"));
+
+        // Then
+        assertThat(result).isSameAs(ledger);
+        verify(exchangeRateService, times(1)).getCrossRates("PLN", "USD");
+    }
+
+    @Test
+    @DisplayName("Should report insufficient funds when the transfer changed nothing")
+    void shouldClassifyInsufficientFunds() {
+        // Given
+        usdRate();
+        noTransfer();
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(User.builder().id(1L).email(EMAIL).build()));
+        when(walletRepository.getBalanceByUserIdAndCurrency(1L, "PLN")).thenReturn(Optional.of(new BigDecimal("10.00")));
+
+        // When & Then
+        assertThatThrownBy(() -> walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Insufficient funds in PLN wallet");
+    }
+
+    @Test
+    @DisplayName("Should report a missing source wallet when the transfer changed nothing")
+    void shouldClassifyMissingWallet() {
+        // Given
+        usdRate();
+        noTransfer();
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(User.builder().id(1L).email(EMAIL).build()));
+        when(walletRepository.getBalanceByUserIdAndCurrency(1L, "PLN")).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00")))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Wallet not found: PLN");
+    }
+
+    @Test
+    @DisplayName("Should report a missing user when the transfer changed nothing")
+    void shouldClassifyMissingUser() {
+        // Given
+        usdRate();
+        noTransfer();
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> walletService.exchangeCurrency(EMAIL, request("PLN", "USD", "100.00")))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("User not found");
+    }
+
+    @Test
+    @DisplayName("Should top up with one atomic deposit")
+    void shouldTopUpAtomically() {
+        // Given
+        Wallet wallet = Wallet.builder().id(7L).currency("PLN").balance(new BigDecimal("150.00")).build();
+        when(walletRepository.depositAtomically(eq(EMAIL), eq("PLN"), eq(new BigDecimal("50.00")), anyString()))
+                .thenReturn(Optional.of(wallet));
+
+        // When
+        Wallet result = walletService.topUpWallet(EMAIL, new BigDecimal("50.00"));
+
+        // Then
+        assertThat(result).isSameAs(wallet);
+        verify(walletTransactionExecutor).execute(eq("topup"), any());
+    }
+
+    @Test
+    @DisplayName("Should fail a top-up when the PLN wallet is missing")
+    void shouldFailTopUpWithoutWallet() {
+        // Given
+        when(walletRepository.depositAtomically(eq(EMAIL), eq("PLN"), any(), anyString())).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> walletService.topUpWallet(EMAIL, BigDecimal.TEN))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("PLN Wallet not found");
+    }
+
+    private void usdRate() {
+        when(exchangeRateService.getCrossRates("PLN", "USD")).thenReturn(CrossRateMatrix.of(List.of(ExchangeRateDto.builder()
+                .code("USD")
+                .bid(new BigDecimal("3.9000"))
+                .ask(new BigDecimal("4.0000"))
+                .rateDate(LocalDate.now())
+                .build())));
+    }
+
+    private void noTransfer() {
+        when(walletRepository.transferAtomically(eq(EMAIL), eq("PLN"), any(), eq("USD"), any(), any(), anyString()))
+                .thenReturn(Optional.empty());
+    }
+
+    private static ExchangeRequestDto request(String from, String to, String amount) {
+        ExchangeRequestDto request = new ExchangeRequestDto();
+        request.setFromCurrency(from);
+        request.setToCurrency(to);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}
@@ -0,0 +1,128 @@
+package pl.aeh.currencyexchange.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.model.Wallet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletTransactionExecutorTest {
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WalletGroupCommitter walletGroupCommitter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WalletTransactionExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new WalletTransactionExecutor(transactionTemplate, meterRegistry, walletGroupCommitter);
+        ReflectionTestUtils.setField(executor, "maxAttempts", 3);
+        ReflectionTestUtils.setField(executor, "backoffMillis", 0L);
+
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @DisplayName("Should retry after an optimistic lock conflict and record both attempts")
+    void shouldRetryAfterConflict() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = executor.execute("exchange", () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new ObjectOptimisticLockingFailureException(Wallet.class, 1L);
+            }
+            return "done";
+        });
+
+        // Then
+        assertThat(result).isEqualTo("done");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(countOf("conflict")).isEqualTo(1.0);
+        assertThat(countOf("committed")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should retry when a wallet row lock is held by another transaction")
+    void shouldRetryWhenLockUnavailable() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = executor.execute("exchange", () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new CannotAcquireLockException("could not obtain lock on row in relation \"wallets\"");
+            }
+            return "done";
+        });
+
+        // Then
+        assertThat(result).isEqualTo("done");
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(countOf("lock_unavailable")).isEqualTo(1.0);
+        assertThat(countOf("committed")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should give up with ConflictException after max attempts")
+    void shouldGiveUpAfterMaxAttempts() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute("topup", () -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Wallet.class, 1L);
+        })).isInstanceOf(ConflictException.class);
+
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("wallet.operations")
+                .tags("operation", "topup", "outcome", "conflict").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Should not retry business errors")
+    void shouldNotRetryBusinessErrors() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute("exchange", () -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("Insufficient funds");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(countOf("failed")).isEqualTo(1.0);
+    }
+
+    private double countOf(String outcome) {
+        return meterRegistry.get("wallet.operations")
+                .tags("operation", "exchange", "mode", "optimistic", "outcome", outcome)
+                .counter().count();
+    }
+}
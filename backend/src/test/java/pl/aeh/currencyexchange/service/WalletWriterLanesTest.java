@@ -0,0 +1,219 @@
+package pl.aeh.currencyexchange.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.aeh.currencyexchange.exception.ConflictException;
+import pl.aeh.currencyexchange.model.User;
+import pl.aeh.currencyexchange.model.Wallet;
+import pl.aeh.currencyexchange.repository.TransactionRepository;
+import pl.aeh.currencyexchange.repository.UserRepository;
+import pl.aeh.currencyexchange.repository.WalletRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletWriterLanesTest {
+
+    private static final String EMAIL = "jan@example.com";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private WalletTransactionExecutor walletTransactionExecutor;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @InjectMocks
+    private WalletWriterLanes walletWriterLanes;
+
+    @BeforeEach
+    void setUp() {
+        User user = User.builder().id(1L).email(EMAIL).build();
+        Wallet pln = Wallet.builder().id(10L).currency("PLN").balance(new BigDecimal("100.0000")).version(0L).build();
+
+        when(walletTransactionExecutor.getMode()).thenReturn(WalletConcurrencyMode.SINGLE_WRITER);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(walletRepository.findAllByUserId(1L)).thenReturn(List.of(pln));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(transactionStatus);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        ReflectionTestUtils.setField(walletWriterLanes, "laneCount", 2);
+        walletWriterLanes.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletWriterLanes.stop();
+    }
+
+    @Test
+    @DisplayName("Should apply consecutive commands to the in-memory balance and load the account once")
+    void shouldKeepBalanceInMemory() {
+        // When
+        BigDecimal first = walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("50")).getBalance());
+        BigDecimal second = walletWriterLanes.execute(EMAIL,
+                account -> account.debit(account.wallet("PLN").orElseThrow(), new BigDecimal("30")).getBalance());
+
+        // Then
+        assertThat(first).isEqualByComparingTo("150");
+        assertThat(second).isEqualByComparingTo("120");
+        verify(walletRepository, times(1)).findAllByUserId(1L);
+        verify(walletRepository, times(2)).writeBalances(eq(1L), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should fail only the command whose action throws")
+    void shouldIsolateFailingCommand() {
+        // When & Then
+        assertThatThrownBy(() -> walletWriterLanes.execute(EMAIL, account -> {
+            throw new IllegalArgumentException("Insufficient funds in PLN wallet");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        BigDecimal balance = walletWriterLanes.execute(EMAIL,
+                account -> account.wallet("PLN").orElseThrow().getBalance());
+        assertThat(balance).isEqualByComparingTo("100");
+        verify(walletRepository, never()).writeBalances(any(), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should evict the account and reload it after a failed batch")
+    void shouldReloadAccountAfterPersistFailure() {
+        // Given
+        when(walletRepository.writeBalances(eq(1L), anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(1);
+
+        // When & Then
+        assertThatThrownBy(() -> walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("50"))))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        BigDecimal balance = walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("5")).getBalance());
+        assertThat(balance).isEqualByComparingTo("105");
+        verify(walletRepository, times(2)).findAllByUserId(1L);
+    }
+
+    @Test
+    @DisplayName("Should reapply commands to the reloaded account when a wallet changed outside the lane")
+    void shouldReapplyAfterVersionConflict() {
+        // Given
+        Wallet changedElsewhere = Wallet.builder().id(10L).currency("PLN").balance(new BigDecimal("200.0000")).version(1L).build();
+        when(walletRepository.findAllByUserId(1L))
+                .thenReturn(List.of(Wallet.builder().id(10L).currency("PLN").balance(new BigDecimal("100.0000")).version(0L).build()))
+                .thenReturn(List.of(changedElsewhere));
+        when(walletRepository.writeBalances(eq(1L), anyCollection()))
+                .thenThrow(new OptimisticLockingFailureException("Wallet 10 was changed by another writer"))
+                .thenReturn(1);
+
+        // When
+        BigDecimal balance = walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("50")).getBalance());
+
+        // Then
+        assertThat(balance).isEqualByComparingTo("250");
+        verify(walletRepository, times(2)).findAllByUserId(1L);
+        verify(walletRepository, times(2)).writeBalances(eq(1L), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should fail with a conflict when the wallet changed outside the lane again")
+    void shouldFailAfterRepeatedVersionConflict() {
+        // Given
+        when(walletRepository.writeBalances(eq(1L), anyCollection()))
+                .thenThrow(new OptimisticLockingFailureException("Wallet 10 was changed by another writer"));
+
+        // When & Then
+        assertThatThrownBy(() -> walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("50"))))
+                .isInstanceOf(ConflictException.class);
+        verify(walletRepository, times(2)).writeBalances(eq(1L), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should fail only the command whose response fails and reapply the rest of its batch")
+    void shouldIsolateFailingResponse() throws Exception {
+        // Given
+        CountDownLatch laneBusy = new CountDownLatch(1);
+        CountDownLatch releaseLane = new CountDownLatch(1);
+        CompletableFuture<Object> blocker = CompletableFuture.supplyAsync(() -> walletWriterLanes.execute(EMAIL, account -> {
+            laneBusy.countDown();
+            await(releaseLane);
+            return null;
+        }));
+        await(laneBusy);
+
+        // When
+        CompletableFuture<BigDecimal> failing = CompletableFuture.supplyAsync(() -> walletWriterLanes.<Wallet, BigDecimal>execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("50")),
+                wallet -> {
+                    throw new IllegalStateException("Idempotency key already recorded");
+                }));
+        CompletableFuture<BigDecimal> other = CompletableFuture.supplyAsync(() -> walletWriterLanes.execute(EMAIL,
+                account -> account.credit("PLN", new BigDecimal("5")),
+                Wallet::getBalance));
+        Thread.sleep(200);
+        releaseLane.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThatThrownBy(() -> failing.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Idempotency key already recorded");
+        assertThat(other.get(10, TimeUnit.SECONDS)).isEqualByComparingTo("105");
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}